@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.benchmarks;
+
+import com.flowlogix.jeedao.DaoHelper;
+import jakarta.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link DaoHelper} queries against the embedded database
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DaoHelperBenchmark {
+    private static final int PAGE_SIZE = 20;
+    private EntityManager em;
+    private DaoHelper<BenchmarkEntity> daoHelper;
+
+    @Setup
+    public void setup(DatabaseState database) {
+        em = database.createEntityManager();
+        daoHelper = new DaoHelper<>(() -> em, BenchmarkEntity.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        em.close();
+    }
+
+    @Benchmark
+    public List<BenchmarkEntity> findRange() {
+        var rows = daoHelper.findRange(DatabaseState.ROWS / 2, DatabaseState.ROWS / 2 + PAGE_SIZE).getResultList();
+        em.clear();
+        return rows;
+    }
+
+    @Benchmark
+    public long count() {
+        return daoHelper.count();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.benchmarks;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Embedded in-memory database, shared by all benchmark threads,
+ * populated with {@link #ROWS} rows of {@link BenchmarkEntity}
+ */
+@State(Scope.Benchmark)
+public class DatabaseState {
+    /**
+     * Number of rows in the database
+     */
+    public static final int ROWS = 10_000;
+    private static final int BATCH_SIZE = 500;
+    private static final int ZIP_CODES = 100_000;
+    private static final int ZIP_CODE_STRIDE = 7;
+    private EntityManagerFactory entityManagerFactory;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        entityManagerFactory = Persistence.createEntityManagerFactory("benchmarks");
+        var em = entityManagerFactory.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            IntStream.range(0, ROWS).forEach(row -> {
+                em.persist(BenchmarkEntity.builder().userId("user" + row).fullName("User " + row)
+                        .address(row + " Main Street").zipCode(row * ZIP_CODE_STRIDE % ZIP_CODES).build());
+                if (row % BATCH_SIZE == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            });
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    /**
+     * Entity manager for a single benchmark thread, to be closed by the caller
+     *
+     * @return new entity manager
+     */
+    public EntityManager createEntityManager() {
+        return entityManagerFactory.createEntityManager();
+    }
+}
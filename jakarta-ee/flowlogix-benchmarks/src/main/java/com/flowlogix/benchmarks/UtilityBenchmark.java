@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.benchmarks;
+
+import com.flowlogix.util.JakartaTransformerUtils;
+import com.flowlogix.util.Streams;
+import com.flowlogix.util.TypeConverter;
+import com.flowlogix.util.TypeConverter.CheckedValue;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Utilities called on every request
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilityBenchmark {
+    private static final int TEXT_LINES = 100;
+    private final byte[] text = "The quick brown fox jumps over the lazy dog\n".repeat(TEXT_LINES)
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Benchmark
+    public Integer typeConverterValueOf() {
+        return TypeConverter.valueOf("12345", Integer.class);
+    }
+
+    @Benchmark
+    public CheckedValue<Double> typeConverterCheckAndConvert() {
+        return TypeConverter.checkAndConvert("12.5", Double.class);
+    }
+
+    @Benchmark
+    public CheckedValue<Integer> typeConverterCheckAndConvertInvalid() {
+        return TypeConverter.checkAndConvert("not a number", Integer.class);
+    }
+
+    @Benchmark
+    public String jakartify() {
+        return JakartaTransformerUtils.jakartify("javax.faces.application.ViewExpiredException");
+    }
+
+    @Benchmark
+    public String readString() throws IOException {
+        return Streams.readString(new ByteArrayInputStream(text));
+    }
+}
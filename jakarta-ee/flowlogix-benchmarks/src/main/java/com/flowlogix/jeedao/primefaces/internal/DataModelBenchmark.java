@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces.internal;
+
+import com.flowlogix.benchmarks.BenchmarkEntity;
+import com.flowlogix.benchmarks.DatabaseState;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.primefaces.model.FilterMeta;
+import org.primefaces.model.MatchMode;
+import org.primefaces.model.SortMeta;
+import org.primefaces.model.SortOrder;
+
+/**
+ * Per-request query building of {@link JPAModelImpl}, and loading a page from the embedded database.
+ * In the same package as {@link JPAModelImpl}, so package-private methods can be measured
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataModelBenchmark {
+    private static final int PAGE_SIZE = 20;
+    private final FilterMeta nameFilter = FilterMeta.builder().field("fullName")
+            .matchMode(MatchMode.CONTAINS).filterValue("User 1").build();
+    private final Map<String, FilterMeta> filters = Map.of(
+            "fullName", nameFilter,
+            "zipCode", FilterMeta.builder().field("zipCode").matchMode(MatchMode.GREATER_THAN)
+                    .filterValue("5000").build(),
+            "address", FilterMeta.builder().field("address").matchMode(MatchMode.STARTS_WITH)
+                    .filterValue("1").build());
+    private final Map<String, SortMeta> sortMeta = Map.of(
+            "zipCode", SortMeta.builder().field("zipCode").order(SortOrder.DESCENDING).priority(0).build(),
+            "fullName", SortMeta.builder().field("fullName").order(SortOrder.ASCENDING).priority(1).build());
+    private EntityManager em;
+    private JPAModelImpl<BenchmarkEntity> model;
+    private CriteriaBuilder cb;
+    private Root<BenchmarkEntity> root;
+
+    @Setup
+    public void setup(DatabaseState database) {
+        em = database.createEntityManager();
+        model = JPAModelImpl.<BenchmarkEntity>builder()
+                .entityManager(() -> em)
+                .entityClass(BenchmarkEntity.class)
+                .build();
+        cb = em.getCriteriaBuilder();
+        root = cb.createQuery(BenchmarkEntity.class).from(BenchmarkEntity.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        em.close();
+    }
+
+    @Benchmark
+    public Predicate getFilters() {
+        return model.getFilters(filters, cb, root);
+    }
+
+    @Benchmark
+    public List<Order> getSort() {
+        return model.getSort(sortMeta, cb, root);
+    }
+
+    @Benchmark
+    public Predicate predicateFromFilter() {
+        return model.predicateFromFilter(cb, root.get("fullName"), nameFilter, nameFilter.getFilterValue());
+    }
+
+    @Benchmark
+    public List<BenchmarkEntity> findRows() {
+        var rows = model.findRows(PAGE_SIZE, PAGE_SIZE, filters, sortMeta);
+        em.clear();
+        return rows;
+    }
+}
@@ -20,6 +20,7 @@ import jakarta.enterprise.inject.Default;
 import jakarta.enterprise.inject.Produces;
 import jakarta.enterprise.inject.spi.InjectionPoint;
 import lombok.NoArgsConstructor;
+import org.omnifaces.util.Beans;
 import java.lang.reflect.ParameterizedType;
 import java.util.List;
 
@@ -48,6 +49,11 @@ class DataModelProducer {
                 builder.filterCaseConversion(config.filterCaseConversion());
                 builder.entityManagerQualifiers(List.of(config.entityManagerSelector()));
                 builder.wildcardSupport(config.wildcardSupport());
+                builder.countStrategy(config.countStrategy());
+                builder.countCap(config.countCap());
+                if (config.countEstimator() != RowCountEstimator.class) {
+                    builder.countEstimator(Beans.getReference(config.countEstimator()));
+                }
             }
         });
     }
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import java.util.List;
+
+/**
+ * Global search strategy, used for the PrimeFaces global filter on the model's {@code searchAttributes}.
+ * By default, or'ed {@code LIKE '%value%'} predicates are used, subject to the model's case sensitivity
+ * and wildcard settings. Use this to take advantage of database full-text search instead.
+ *
+ * @param <TT> Entity Type
+ */
+@FunctionalInterface
+public interface GlobalSearch<TT> {
+    /**
+     * Create global search predicate
+     *
+     * @param cb
+     * @param root
+     * @param fields searchable attributes
+     * @param value search value, never blank
+     * @return predicate
+     */
+    Predicate search(CriteriaBuilder cb, Root<TT> root, List<Expression<String>> fields, String value);
+
+    /**
+     * Global search via a boolean database function, such as a full-text match function,
+     * called for each searchable attribute as {@code functionName(field, value)}.
+     * For example, in PostgreSQL:
+     * {@snippet lang = "sql":
+     * CREATE FUNCTION fts_match(doc text, query text) RETURNS boolean
+     *     AS 'SELECT to_tsvector(doc) @@ plainto_tsquery(query)' LANGUAGE SQL IMMUTABLE;
+     * }
+     *
+     * @param <TT> Entity Type
+     * @param functionName database function name
+     * @return global search strategy
+     */
+    static <TT> GlobalSearch<TT> booleanFunction(String functionName) {
+        return (cb, root, fields, value) -> cb.or(fields.stream()
+                .map(field -> cb.isTrue(cb.function(functionName, Boolean.class, field, cb.literal(value))))
+                .toArray(Predicate[]::new));
+    }
+}
@@ -15,13 +15,26 @@
  */
 package com.flowlogix.jeedao.primefaces;
 
+import com.flowlogix.api.dao.QueryMetrics;
+import com.flowlogix.api.dao.QueryMetrics.Operation;
+import com.flowlogix.jeedao.primefaces.internal.CriteriaKey;
+import com.flowlogix.jeedao.primefaces.internal.EntityGenerations;
 import com.flowlogix.jeedao.primefaces.internal.JPAModelImpl;
 import com.flowlogix.jeedao.primefaces.internal.JPAModelImpl.BuilderInitializer;
 import com.flowlogix.jeedao.primefaces.internal.JPAModelImpl.JPAModelImplBuilder;
 import com.flowlogix.jeedao.primefaces.internal.InternalQualifierJPALazyModel;
+import com.flowlogix.jeedao.primefaces.internal.TransientRows;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import jakarta.enterprise.context.Dependent;
@@ -35,6 +48,7 @@ import org.omnifaces.util.Beans;
 import org.primefaces.model.FilterMeta;
 import org.primefaces.model.LazyDataModel;
 import org.primefaces.model.SortMeta;
+import static java.lang.Math.toIntExact;
 
 /**
  * Easy implementation of PrimeFaces lazy data model using Lambdas, This is the main class in
@@ -65,10 +79,31 @@ public class JPALazyDataModel<TT> extends LazyDataModel<TT> {
      * and can be used with {@link #getResultField(String)} for result fields
      */
     public static final String RESULT = "result";
-    private static final long serialVersionUID = 4L;
+    /**
+     * Default maximum number of rows counted by {@link CountStrategy#CAPPED}
+     */
+    public static final int DEFAULT_COUNT_CAP = 10_000;
+    private static final long serialVersionUID = 5L;
     @Delegate
     private JPAModelImpl<TT> impl;
     private transient PartialBuilderConsumer<TT> partialBuilder;
+    /**
+     * Rows of the most recently loaded page, by row key, so selecting rows doesn't need a database round trip
+     */
+    private transient Map<String, TT> pageRows;
+    private transient long pageGeneration;
+    /**
+     * Most recently loaded page, to reload after compact deserialization.
+     * Only kept with {@link JPAModelImpl#isCompactSerialization()}, so other models don't serialize it
+     */
+    private PageState lastPage;
+    /**
+     * Incremented by every load request, so in-flight loads can tell they are superseded,
+     * see {@link JPAModelImpl#isSupersedeLoads()}
+     */
+    private final AtomicLong requestSequence = new AtomicLong();
+
+    private record PageState(int first, int pageSize, CriteriaKey criteria) implements Serializable { }
 
     /**
      * Prevent direct creation
@@ -97,6 +132,37 @@ public class JPALazyDataModel<TT> extends LazyDataModel<TT> {
         UPPER, LOWER
     }
 
+    /**
+     * How the total number of rows is counted
+     */
+    public enum CountStrategy {
+        /**
+         * {@code COUNT(*)} of all matching rows
+         */
+        EXACT,
+        /**
+         * Count at most {@code countCap + 1} rows, reported as "N+" by {@link #getRowCountText()}
+         */
+        CAPPED,
+        /**
+         * Use {@link RowCountEstimator} when there are no active filters, exact count otherwise
+         */
+        ESTIMATED
+    }
+
+    /**
+     * Row count suitable for display, such as in the paginator's {@code currentPageReportTemplate}.
+     * Capped counts are displayed as "N+"
+     *
+     * @return row count text
+     */
+    public String getRowCountText() {
+        if (impl.getCountStrategy() == CountStrategy.CAPPED && getRowCount() > impl.getCountCap()) {
+            return impl.getCountCap() + "+";
+        }
+        return String.valueOf(getRowCount());
+    }
+
     JPALazyDataModel<TT> partialInitialize(@NonNull PartialBuilderConsumer<TT> builder) {
         if (partialBuilder != null) {
             throw new IllegalStateException("partial builder already initialized");
@@ -151,10 +217,34 @@ public class JPALazyDataModel<TT> extends LazyDataModel<TT> {
 
     /**
      * Overridden from {@link LazyDataModel#getRowData(String)}
+     * Rows of the most recently loaded page are returned without querying the database.
+     * In projection mode, rows are always found via the entity manager, since page rows are only partly populated
      */
     @Override
     @Transactional
     public TT getRowData(String rowKey) {
+        return QueryMetrics.measure(impl.getMetrics(), () -> operation("getRowData", -1, -1, null),
+                () -> findRowData(rowKey), row -> row == null ? 0 : 1);
+    }
+
+    private TT findRowData(String rowKey) {
+        if (!impl.getProjection().isEmpty()) {
+            return findEntity(rowKey);
+        }
+        var restoredPage = lastPage;
+        if (pageRows == null && restoredPage != null) {
+            load(restoredPage.first(), restoredPage.pageSize(), restoredPage.criteria().toSortMeta(),
+                    restoredPage.criteria().toFilterMeta());
+        }
+        var rows = pageRows;
+        if (rows != null && rows.containsKey(rowKey)
+                && pageGeneration == EntityGenerations.current(impl.getEntityClass())) {
+            return rows.get(rowKey);
+        }
+        return findEntity(rowKey);
+    }
+
+    private TT findEntity(String rowKey) {
         return impl.getEntityManager().get().find(impl.getEntityClass(), impl.getStringToKeyConverter().apply(rowKey));
     }
 
@@ -164,7 +254,87 @@ public class JPALazyDataModel<TT> extends LazyDataModel<TT> {
     @Override
     @Transactional
     public List<TT> load(int first, int pageSize, Map<String, SortMeta> sortBy, Map<String, FilterMeta> filterBy) {
-        return impl.findRows(first, pageSize, filterBy, sortBy);
+        return QueryMetrics.measure(impl.getMetrics(),
+                () -> operation("load", first, pageSize, CriteriaKey.of(filterBy, sortBy)),
+                () -> loadPage(first, pageSize, sortBy, filterBy), List::size);
+    }
+
+    private List<TT> loadPage(int first, int pageSize, Map<String, SortMeta> sortBy, Map<String, FilterMeta> filterBy) {
+        long request = requestSequence.incrementAndGet();
+        BooleanSupplier superseded = () -> impl.isSupersedeLoads() && requestSequence.get() != request;
+        long generation = EntityGenerations.current(impl.getEntityClass());
+        var rows = impl.findRows(first, pageSize, filterBy, sortBy, superseded);
+        if (superseded.getAsBoolean()) {
+            // the newer load replaces the page, meanwhile the previous page is still shown
+            return previousRows();
+        }
+        var rowsByKey = new HashMap<String, TT>();
+        rows.forEach(row -> rowsByKey.putIfAbsent(getRowKey(row), row));
+        pageRows = rowsByKey;
+        pageGeneration = generation;
+        lastPage = impl.isCompactSerialization() ? new PageState(first, pageSize, CriteriaKey.of(filterBy, sortBy)) : null;
+        // count came with the page, and is more current than the one PrimeFaces asked for before loading
+        impl.pageCount(filterBy).ifPresent(count -> setRowCount(toIntExact(count)));
+        return rows;
+    }
+
+    private List<TT> previousRows() {
+        List<TT> rows = getWrappedData();
+        return rows != null ? rows : List.of();
+    }
+
+    /**
+     * Overridden from {@link LazyDataModel#iterator(Map, Map)}, which is used by PrimeFaces data exporters.
+     * When {@link JPAModelImpl#getExportChunkSize()} is set, instead of loading page by page
+     * into the same persistence context, rows are streamed via {@link JPAModelImpl#exportRows(Map, Map)}.
+     * Otherwise, rows are loaded page by page, as with {@link LazyDataModel}
+     * <p>
+     * When streaming, the entity manager's persistence context is cleared
+     * ({@link jakarta.persistence.EntityManager#clear()}) between chunks, which detaches all of its
+     * managed entities, including the caller's. Flush pending changes before iterating,
+     * and don't rely on entities staying managed while iterating
+     */
+    @Override
+    public Iterator<TT> iterator(Map<String, SortMeta> sortBy, Map<String, FilterMeta> filterBy) {
+        return impl.getExportChunkSize() > 0 ? impl.exportRows(filterBy, sortBy).iterator()
+                : super.iterator(sortBy, filterBy);
+    }
+
+    /**
+     * Size of this model in serialized form, such as when it's replicated with the session
+     *
+     * @return number of bytes
+     */
+    public long getSerializedSize() {
+        var counter = new OutputStream() {
+            private long size;
+
+            @Override
+            public void write(int b) {
+                ++size;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                size += len;
+            }
+        };
+        try (var output = new ObjectOutputStream(counter)) {
+            output.writeObject(this);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return counter.size;
+    }
+
+    /**
+     * Overridden from {@link LazyDataModel#setWrappedData(Object)}
+     * With {@link JPAModelImpl#isCompactSerialization()}, loaded rows are not written when the model is serialized
+     */
+    @Override
+    public void setWrappedData(Object list) {
+        super.setWrappedData(impl != null && impl.isCompactSerialization() && list instanceof List<?> rows
+                ? new TransientRows<>(rows) : list);
     }
 
     /**
@@ -172,12 +342,20 @@ public class JPALazyDataModel<TT> extends LazyDataModel<TT> {
      */
     @Override
     public int count(Map<String, FilterMeta> map) {
-        return impl.count(map);
+        return QueryMetrics.measure(impl.getMetrics(),
+                () -> operation("count", -1, -1, CriteriaKey.of(map, Map.of())),
+                () -> impl.count(map), Integer::longValue);
+    }
+
+    private Operation operation(String name, int first, int pageSize, Object criteria) {
+        return new Operation(name, impl.getEntityClass(), impl.getModelName(), first, pageSize, criteria, null);
     }
 
     private JPALazyDataModel<TT> initialize(BuilderFunction<TT> builder, boolean resetPartialBuilder) {
         impl = JPAModelImpl.create(new BuilderInitializer<>(builder, partialBuilder));
         impl.setX_do_not_use_in_builder(new BuilderInitializer<>(builder, partialBuilder));
+        pageRows = null;
+        lastPage = null;
         if (resetPartialBuilder) {
             partialBuilder = null;
         }
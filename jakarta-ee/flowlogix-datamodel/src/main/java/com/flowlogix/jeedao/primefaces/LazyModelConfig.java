@@ -15,6 +15,7 @@
  */
 package com.flowlogix.jeedao.primefaces;
 
+import com.flowlogix.jeedao.primefaces.JPALazyDataModel.CountStrategy;
 import com.flowlogix.jeedao.primefaces.JPALazyDataModel.FilterCaseConversion;
 import jakarta.enterprise.util.Nonbinding;
 import jakarta.inject.Qualifier;
@@ -56,4 +57,22 @@ public @interface LazyModelConfig {
      */
     @Nonbinding
     Class<? extends Annotation> [] entityManagerSelector() default { };
+
+    /**
+     * How to count rows
+     */
+    @Nonbinding
+    CountStrategy countStrategy() default CountStrategy.EXACT;
+
+    /**
+     * Maximum number of rows counted by {@link CountStrategy#CAPPED}
+     */
+    @Nonbinding
+    int countCap() default JPALazyDataModel.DEFAULT_COUNT_CAP;
+
+    /**
+     * CDI bean that estimates row counts for {@link CountStrategy#ESTIMATED}
+     */
+    @Nonbinding
+    Class<? extends RowCountEstimator> countEstimator() default RowCountEstimator.class;
 }
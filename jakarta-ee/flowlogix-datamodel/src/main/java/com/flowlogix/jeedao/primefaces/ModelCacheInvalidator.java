@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces;
+
+import com.flowlogix.api.dao.BulkUpdateListener;
+import com.flowlogix.jeedao.primefaces.internal.EntityGenerations;
+import jakarta.persistence.EntityListeners;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * JPA Entity Listener that invalidates data cached by {@link JPALazyDataModel}, such as row counts and page rows,
+ * when entities are persisted, updated or removed, since updates can change which rows match the filters,
+ * and what the rows contain.
+ * Register it via {@link EntityListeners} annotation on the entity,
+ * or as a default entity listener in {@code orm.xml}
+ * <p>
+ * Bulk operations bypass entity listeners. {@code DaoHelper}'s {@code updateWhere()} and {@code deleteWhere()}
+ * invalidate automatically, since this class is registered as a {@link BulkUpdateListener} service,
+ * use {@link #invalidate(Class)} after running other bulk operations.
+ */
+public class ModelCacheInvalidator implements BulkUpdateListener {
+    /**
+     * Invalidate all cached model data for the entity class and its superclasses,
+     * and mark its {@link SearchIndex} as stale, since rows were changed without going through the entity listeners
+     *
+     * @param entityClass
+     */
+    public static void invalidate(Class<?> entityClass) {
+        EntityGenerations.advance(entityClass);
+        SearchIndex.of(entityClass).ifPresent(SearchIndex::invalidate);
+    }
+
+    /**
+     * Invalidates cached model data after bulk updates and deletes
+     *
+     * @param entityClass
+     */
+    @Override
+    public void bulkUpdated(Class<?> entityClass) {
+        invalidate(entityClass);
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void entityChanged(Object entity) {
+        EntityGenerations.advance(entity.getClass());
+    }
+}
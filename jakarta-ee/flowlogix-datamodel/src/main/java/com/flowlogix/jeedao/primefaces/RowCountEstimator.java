@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces;
+
+import com.flowlogix.jeedao.primefaces.JPALazyDataModel.CountStrategy;
+import jakarta.persistence.EntityManager;
+import java.util.OptionalLong;
+
+/**
+ * Estimates total number of rows of an entity's table, usually from database statistics,
+ * such as {@code pg_class.reltuples} in PostgreSQL or {@code information_schema.tables.table_rows} in MySQL.
+ * Used by {@link CountStrategy#ESTIMATED} when there are no active filters
+ */
+@FunctionalInterface
+public interface RowCountEstimator {
+    /**
+     * Estimate number of rows
+     *
+     * @param entityManager
+     * @param entityClass
+     * @return estimated row count, or empty if it's not available, in which case the rows are counted
+     */
+    OptionalLong estimate(EntityManager entityManager, Class<?> entityClass);
+}
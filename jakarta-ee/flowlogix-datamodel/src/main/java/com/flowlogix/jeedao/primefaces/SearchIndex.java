@@ -0,0 +1,360 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces;
+
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Id;
+import java.io.IOException;
+import java.io.ObjectInputFilter.Status;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.Getter;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.reflect.MethodUtils;
+
+/**
+ * In-process trigram (n-gram) index of entity attributes, kept in a local file.
+ * Speeds up {@link org.primefaces.model.MatchMode#CONTAINS} and global filters of {@link JPALazyDataModel},
+ * which otherwise become {@code LIKE '%value%'} full table scans. Matching rows are looked up in the index
+ * first, and the filter is narrowed down to their primary keys, so the database only checks those rows.
+ * The original filter is kept, so results are the same as without the index, as long as the index contains
+ * every row. Filters are only narrowed down while the index is {@link #isCurrent() current}, otherwise
+ * the plain filter is used. When a current index finds no rows, the filter matches nothing,
+ * and when it finds more rows than the model's {@code searchIndexMaxIds}, the plain filter is used.
+ * <p>
+ * Index is current after {@link #rebuild(EntityManager)}. Index loaded from its file is not current,
+ * since the data could have changed since it was saved, unless {@link #markCurrent()} is called.
+ * Register {@link SearchIndexUpdater} as an entity listener to keep the index up to date,
+ * {@link #save()} writes it to disk. Rows written without going through the entity listener,
+ * such as by bulk operations, other cluster nodes or other applications, make the index stale,
+ * see {@link #invalidate()}. Index is used with the model's {@code searchIndex} builder option.
+ * <p>
+ * Text of all indexed attributes of every row, and its trigrams, are kept on the heap
+ * for the life of the application, which takes several times the size of the indexed text.
+ * Only index short, selective attributes of tables that fit into memory.
+ */
+@Slf4j
+public final class SearchIndex {
+    private static final int GRAM = 3;
+    private static final int MAX_IDS = 1_000;
+    private static final Map<Class<?>, SearchIndex> INDEXES = new ConcurrentHashMap<>();
+    private static final Set<Class<?>> SAVED_TYPES = Set.of(HashMap.class, Map.Entry[].class, String.class,
+            Number.class, Long.class, Integer.class, Short.class, Byte.class, Character.class, Boolean.class,
+            BigInteger.class, BigDecimal.class, UUID.class);
+    private final @Getter Class<?> entityClass;
+    private final Path file;
+    private final Map<String, AttributeIndex> attributes;
+    private final Function<Object, Object> idReader;
+    private final Class<?> idType;
+    private volatile boolean current;
+    /**
+     * Name of the primary key attribute
+     */
+    private final @Getter String idAttribute;
+
+    private SearchIndex(Class<?> entityClass, Path file, List<String> attributes) {
+        attributes.stream().filter(attribute -> attribute.contains(".")).findAny().ifPresent(attribute -> {
+            throw new IllegalArgumentException("Nested attributes can't be indexed: " + attribute);
+        });
+        this.entityClass = entityClass;
+        this.file = file;
+        this.attributes = attributes.stream().collect(Collectors.toUnmodifiableMap(Function.identity(),
+                attribute -> new AttributeIndex()));
+        var id = idMember(entityClass);
+        this.idType = id instanceof Method method ? method.getReturnType() : ((Field) id).getType();
+        this.idAttribute = id instanceof Method method
+                ? StringUtils.uncapitalize(method.getName().replaceFirst("^(get|is)", "")) : ((Field) id).getName();
+        this.idReader = entity -> readMember(entity, idAttribute);
+    }
+
+    /**
+     * Create search index for the entity, loading it from the directory if it was saved before.
+     * Index is registered with {@link SearchIndexUpdater}, replacing an existing index of the same entity
+     *
+     * @param entityClass
+     * @param directory where index file is kept
+     * @param attributes indexed attributes of the entity itself, either string or converted to string
+     * @return new index
+     * @throws IllegalArgumentException if attributes are nested, i.e. in dotted notation
+     */
+    public static SearchIndex create(Class<?> entityClass, Path directory, String... attributes) {
+        var index = new SearchIndex(entityClass, directory.resolve(entityClass.getName() + ".ngram"),
+                List.of(attributes));
+        index.load();
+        INDEXES.put(entityClass, index);
+        return index;
+    }
+
+    /**
+     * Index of the entity class, or its closest superclass
+     *
+     * @param entityClass
+     * @return search index
+     */
+    static Optional<SearchIndex> of(Class<?> entityClass) {
+        for (Class<?> cls = entityClass; cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+            var index = INDEXES.get(cls);
+            if (index != null) {
+                return Optional.of(index);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Add or replace entity in the index
+     *
+     * @param entity
+     */
+    public void index(Object entity) {
+        Object id = idReader.apply(entity);
+        attributes.forEach((name, index) -> index.put(id, readMember(entity, name)));
+    }
+
+    /**
+     * Remove entity from the index
+     *
+     * @param entity
+     */
+    public void remove(Object entity) {
+        Object id = idReader.apply(entity);
+        attributes.values().forEach(index -> index.remove(id));
+    }
+
+    /**
+     * Index all existing entities, after which the index is current
+     *
+     * @param em
+     */
+    @SuppressWarnings("unchecked")
+    public void rebuild(EntityManager em) {
+        current = false;
+        attributes.values().forEach(AttributeIndex::clear);
+        var cls = (Class<Object>) entityClass;
+        var query = em.getCriteriaBuilder().createQuery(cls);
+        query.select(query.from(cls));
+        em.createQuery(query).getResultStream().forEach(this::index);
+        current = true;
+    }
+
+    /**
+     * Whether the index contains all rows, and is used to narrow down filters
+     *
+     * @return true if current
+     */
+    public boolean isCurrent() {
+        return current;
+    }
+
+    /**
+     * Marks the index as current, such as when it was loaded from a file
+     * that's known to contain all rows
+     */
+    public void markCurrent() {
+        current = true;
+    }
+
+    /**
+     * Marks the index as stale, so it's no longer used until {@link #rebuild(EntityManager)},
+     * such as after rows were written without going through {@link SearchIndexUpdater}
+     */
+    public void invalidate() {
+        current = false;
+    }
+
+    /**
+     * Write index to its file
+     */
+    public void save() {
+        Map<String, Map<Object, String>> texts = new HashMap<>();
+        attributes.forEach((name, index) -> texts.put(name, new HashMap<>(index.texts)));
+        try {
+            Files.createDirectories(file.getParent());
+            Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try (var output = new ObjectOutputStream(Files.newOutputStream(temporary))) {
+                output.writeObject(texts);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Whether the attribute is indexed
+     *
+     * @param attribute
+     * @return true if indexed
+     */
+    public boolean isIndexed(String attribute) {
+        return attributes.containsKey(attribute);
+    }
+
+    /**
+     * Primary keys of entities whose attribute contains the value, ignoring case
+     *
+     * @param attribute
+     * @param value
+     * @return primary keys, or empty if the index can't narrow down the search,
+     * such as when the value is too short, or there are too many matches
+     */
+    public Optional<Set<Object>> find(String attribute, String value) {
+        var index = attributes.get(attribute);
+        return index == null ? Optional.empty() : index.find(normalize(value));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void load() {
+        if (!Files.isReadable(file)) {
+            return;
+        }
+        try (var input = new ObjectInputStream(Files.newInputStream(file))) {
+            // only the index's own types, so the file can't be used for deserialization attacks
+            input.setObjectInputFilter(info -> info.serialClass() == null ? Status.UNDECIDED
+                    : isSavedType(info.serialClass()) ? Status.ALLOWED : Status.REJECTED);
+            var texts = (Map<String, Map<Object, String>>) input.readObject();
+            texts.forEach((name, values) -> Optional.ofNullable(attributes.get(name))
+                    .ifPresent(index -> values.forEach(index::putNormalized)));
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            log.warn("Unable to load search index {}, it needs to be rebuilt", file, e);
+        }
+    }
+
+    private boolean isSavedType(Class<?> cls) {
+        return SAVED_TYPES.contains(cls) || cls.isAssignableFrom(idType) && cls != Object.class;
+    }
+
+    private static String normalize(Object value) {
+        return value.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> grams(String text) {
+        return IntStream.rangeClosed(0, text.length() - GRAM).mapToObj(ii -> text.substring(ii, ii + GRAM))
+                .collect(Collectors.toSet());
+    }
+
+    private static AccessibleObject idMember(Class<?> entityClass) {
+        for (Class<?> cls = entityClass; cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+            for (Field field : cls.getDeclaredFields()) {
+                if (field.isAnnotationPresent(Id.class) || field.isAnnotationPresent(EmbeddedId.class)) {
+                    return field;
+                }
+            }
+            for (Method method : cls.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(Id.class) || method.isAnnotationPresent(EmbeddedId.class)) {
+                    return method;
+                }
+            }
+        }
+        throw new IllegalArgumentException("No @Id found in " + entityClass.getName());
+    }
+
+    @SneakyThrows(ReflectiveOperationException.class)
+    private static Object readMember(Object entity, String name) {
+        String capitalized = StringUtils.capitalize(name);
+        Method getter = Optional.ofNullable(MethodUtils.getAccessibleMethod(entity.getClass(), "get" + capitalized))
+                .orElseGet(() -> MethodUtils.getAccessibleMethod(entity.getClass(), "is" + capitalized));
+        if (getter != null) {
+            return getter.invoke(entity);
+        }
+        for (Class<?> cls = entity.getClass(); cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+            try {
+                Field field = cls.getDeclaredField(name);
+                return field.trySetAccessible() ? field.get(entity) : null;
+            } catch (NoSuchFieldException e) {
+                // try the superclass
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Trigram postings of a single attribute, with the indexed text
+     * to verify candidates and to save the index
+     */
+    private static final class AttributeIndex {
+        private final Map<Object, String> texts = new ConcurrentHashMap<>();
+        private final Map<String, Set<Object>> postings = new ConcurrentHashMap<>();
+
+        void put(Object id, Object value) {
+            remove(id);
+            if (value != null) {
+                putNormalized(id, normalize(value));
+            }
+        }
+
+        void putNormalized(Object id, String text) {
+            texts.put(id, text);
+            grams(text).forEach(gram -> postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(id));
+        }
+
+        void remove(Object id) {
+            String text = texts.remove(id);
+            if (text != null) {
+                grams(text).forEach(gram -> Optional.ofNullable(postings.get(gram)).ifPresent(ids -> ids.remove(id)));
+            }
+        }
+
+        void clear() {
+            texts.clear();
+            postings.clear();
+        }
+
+        Optional<Set<Object>> find(String value) {
+            if (value.length() < GRAM) {
+                return Optional.empty();
+            }
+            Set<Object> candidates = null;
+            for (String gram : grams(value)) {
+                Set<Object> ids = postings.getOrDefault(gram, Set.of());
+                if (candidates == null) {
+                    candidates = new HashSet<>(ids);
+                } else {
+                    candidates.retainAll(ids);
+                }
+                if (candidates.isEmpty()) {
+                    break;
+                }
+            }
+            candidates.removeIf(id -> !texts.getOrDefault(id, "").contains(value));
+            return candidates.size() > MAX_IDS ? Optional.empty() : Optional.of(candidates);
+        }
+    }
+}
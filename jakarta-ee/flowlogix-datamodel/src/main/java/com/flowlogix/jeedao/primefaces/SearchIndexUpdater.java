@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces;
+
+import jakarta.persistence.EntityListeners;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.omnifaces.util.Lazy;
+
+/**
+ * JPA Entity Listener that keeps {@link SearchIndex} of the entity up to date.
+ * Register it via {@link EntityListeners} annotation on the entity,
+ * or as a default entity listener in {@code orm.xml}
+ * <p>
+ * Within a JTA transaction, the index is updated after the transaction commits,
+ * so rolled back changes never make it into the index.
+ * Bulk operations bypass entity listeners, use {@link SearchIndex#rebuild} after running them.
+ */
+@Slf4j
+public class SearchIndexUpdater {
+    private static final Lazy<Optional<TransactionSynchronizationRegistry>> REGISTRY = new Lazy<>(() -> {
+        try {
+            return Optional.of(InitialContext.doLookup("java:comp/TransactionSynchronizationRegistry"));
+        } catch (NamingException e) {
+            log.debug("Transaction synchronization is not available, search index is updated immediately", e);
+            return Optional.empty();
+        }
+    });
+
+    @PostPersist
+    @PostUpdate
+    void entityChanged(Object entity) {
+        SearchIndex.of(entity.getClass()).ifPresent(index -> afterCommit(() -> index.index(entity)));
+    }
+
+    @PostRemove
+    void entityRemoved(Object entity) {
+        SearchIndex.of(entity.getClass()).ifPresent(index -> afterCommit(() -> index.remove(entity)));
+    }
+
+    private static void afterCommit(Runnable update) {
+        var registry = REGISTRY.get().orElse(null);
+        if (registry == null || registry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            update.run();
+            return;
+        }
+        registry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() { }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    update.run();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces.internal;
+
+import com.flowlogix.api.dao.JPAFinder;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.RequiredArgsConstructor;
+import org.primefaces.model.FilterMeta;
+import org.primefaces.model.SortMeta;
+
+/**
+ * Loads the page together with the total row count in a single query for {@link JPAModelImpl},
+ * via {@link JPAFinder#findRangeWithCount}.
+ * The count is remembered, so the {@code count()} call that PrimeFaces makes before loading
+ * the next page with the same filter criteria doesn't need a query of its own.
+ * Remembered count is discarded when entities of the model's class are added, updated or removed.
+ *
+ * @param <TT> entity type
+ */
+@RequiredArgsConstructor
+final class CombinedPageQuery<TT> {
+    private final JPAModelImpl<TT> model;
+    private final AtomicReference<LastCount> lastCount = new AtomicReference<>();
+
+    private record LastCount(CriteriaKey criteria, long generation, long count) { }
+
+    List<TT> findRows(int first, int pageSize, Map<String, FilterMeta> filters, Map<String, SortMeta> sortMeta) {
+        long generation = EntityGenerations.current(model.getEntityClass());
+        var result = model.getJpaFinder().findRangeWithCount(Integer.max(first, 0), Integer.max(first + pageSize, 1),
+                qc -> model.addToCriteria(qc, filters, sortMeta),
+                cqc -> cqc.query().where(model.getFilters(filters, cqc.builder(), cqc.root())),
+                query -> model.getOptimizer().apply(model.withTimeout(query)));
+        lastCount.set(new LastCount(CriteriaKey.ofFilters(filters), generation, result.count()));
+        return result.rows();
+    }
+
+    /**
+     * Count from the last page load, if it was loaded with the same filter criteria
+     *
+     * @param filters
+     * @return count, or empty if a count query is needed
+     */
+    OptionalLong lastCount(Map<String, FilterMeta> filters) {
+        var last = lastCount.get();
+        if (last != null && last.generation() == EntityGenerations.current(model.getEntityClass())
+                && last.criteria().equals(CriteriaKey.ofFilters(filters))) {
+            return OptionalLong.of(last.count());
+        }
+        return OptionalLong.empty();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces.internal;
+
+import com.flowlogix.jeedao.primefaces.ModelCacheInvalidator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import lombok.RequiredArgsConstructor;
+import org.primefaces.model.FilterMeta;
+
+/**
+ * Caches row counts of {@link JPAModelImpl} per normalized filter criteria,
+ * so page changes with unchanged filters do not run another {@code COUNT(*)} query.
+ * Entries expire after {@link JPAModelImpl#getCountCacheExpiry()}, or when entities
+ * of the model's class are added, updated or removed, see {@link ModelCacheInvalidator}
+ */
+@RequiredArgsConstructor
+final class CountCache {
+    private static final int MAX_ENTRIES = 32;
+    private final JPAModelImpl<?> model;
+    private final Map<CriteriaKey, Entry> entries = new LinkedHashMap<>(MAX_ENTRIES, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CriteriaKey, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private record Entry(long count, long generation, long expiresAt) { }
+
+    long count(Map<String, FilterMeta> filters, LongSupplier counter) {
+        var expiry = model.getCountCacheExpiry();
+        if (expiry.isZero() || expiry.isNegative()) {
+            return counter.getAsLong();
+        }
+        var key = CriteriaKey.ofFilters(filters);
+        long generation = EntityGenerations.current(model.getEntityClass());
+        long now = System.nanoTime();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.generation() == generation && now - entry.expiresAt() < 0) {
+            return entry.count();
+        }
+        long count = counter.getAsLong();
+        synchronized (entries) {
+            entries.put(key, new Entry(count, generation, now + expiry.toNanos()));
+        }
+        return count;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces.internal;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.primefaces.model.FilterMeta;
+import org.primefaces.model.MatchMode;
+import org.primefaces.model.SortMeta;
+import org.primefaces.model.SortOrder;
+
+/**
+ * Normalized, comparable form of the filter and sort criteria requested by the UI.
+ * Two requests with the same filter values and the same sort produce equal keys,
+ * regardless of map ordering or array vs. collection filter values.
+ * Internal record, do not use
+ *
+ * @param filters field name to filter, sorted by field name
+ * @param sort sort fields, in priority order
+ */
+public record CriteriaKey(SortedMap<String, FilterKey> filters, List<SortKey> sort) implements Serializable {
+    /**
+     * Normalized filter of a single field
+     *
+     * @param matchMode
+     * @param value
+     */
+    public record FilterKey(MatchMode matchMode, Object value) implements Serializable { }
+
+    /**
+     * Normalized sort of a single field
+     *
+     * @param field
+     * @param order
+     */
+    public record SortKey(String field, SortOrder order) implements Serializable { }
+
+    /**
+     * Normalized filter and sort criteria
+     *
+     * @param filters
+     * @param sortMeta
+     * @return criteria key
+     */
+    public static CriteriaKey of(Map<String, FilterMeta> filters, Map<String, SortMeta> sortMeta) {
+        return new CriteriaKey(normalizeFilters(filters), sortMeta.values().stream().sorted()
+                .filter(meta -> meta.getOrder() != null && !meta.getOrder().isUnsorted())
+                .map(meta -> new SortKey(meta.getField(), meta.getOrder())).toList());
+    }
+
+    static CriteriaKey ofFilters(Map<String, FilterMeta> filters) {
+        return new CriteriaKey(normalizeFilters(filters), List.of());
+    }
+
+    /**
+     * Filter criteria, suitable for loading the model
+     *
+     * @return filter metadata by field
+     */
+    public Map<String, FilterMeta> toFilterMeta() {
+        var filterMeta = new LinkedHashMap<String, FilterMeta>();
+        filters.forEach((field, filter) -> filterMeta.put(field, FilterMeta.GLOBAL_FILTER_KEY.equals(field)
+                ? FilterMeta.of(filter.value(), null)
+                : FilterMeta.builder().field(field).matchMode(filter.matchMode()).filterValue(filter.value()).build()));
+        return filterMeta;
+    }
+
+    /**
+     * Sort criteria, suitable for loading the model
+     *
+     * @return sort metadata by field
+     */
+    public Map<String, SortMeta> toSortMeta() {
+        var sortMeta = new LinkedHashMap<String, SortMeta>();
+        for (int priority = 0; priority < sort.size(); ++priority) {
+            var key = sort.get(priority);
+            sortMeta.put(key.field(), SortMeta.builder().field(key.field()).order(key.order()).priority(priority).build());
+        }
+        return sortMeta;
+    }
+
+    private static SortedMap<String, FilterKey> normalizeFilters(Map<String, FilterMeta> filters) {
+        var normalized = new TreeMap<String, FilterKey>();
+        // global filter has no field
+        filters.values().stream().filter(meta -> (meta.getField() != null || meta.isGlobalFilter())
+                        && meta.getFilterValue() != null)
+                .forEach(meta -> normalized.put(meta.isGlobalFilter() ? FilterMeta.GLOBAL_FILTER_KEY : meta.getField(),
+                        new FilterKey(meta.getMatchMode(), normalizeValue(meta.getFilterValue()))));
+        return normalized;
+    }
+
+    private static Object normalizeValue(Object value) {
+        if (value.getClass().isArray()) {
+            return Arrays.asList((Object[]) value);
+        } else if (value instanceof Collection<?> collection) {
+            return collection.stream().toList();
+        }
+        return value;
+    }
+}
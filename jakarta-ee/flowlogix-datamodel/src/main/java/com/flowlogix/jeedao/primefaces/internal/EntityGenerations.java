@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces.internal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Application-wide generation counter per entity class.
+ * Incremented whenever entities of the class are added, updated or removed,
+ * so cached data derived from the older generation can be recognized as stale.
+ * Models don't have to register themselves, so there is nothing to leak when views go away.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@SuppressWarnings("HideUtilityClassConstructor")
+public class EntityGenerations {
+    private static final Map<Class<?>, AtomicLong> GENERATIONS = new ConcurrentHashMap<>();
+
+    /**
+     * Current generation of the entity class
+     *
+     * @param entityClass
+     * @return generation
+     */
+    public static long current(Class<?> entityClass) {
+        return GENERATIONS.computeIfAbsent(entityClass, key -> new AtomicLong()).get();
+    }
+
+    /**
+     * Advance generation of the entity class and all of its superclasses,
+     * so models of base entities are also invalidated
+     *
+     * @param entityClass
+     */
+    public static void advance(Class<?> entityClass) {
+        for (Class<?> cls = entityClass; cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+            GENERATIONS.computeIfAbsent(cls, key -> new AtomicLong()).incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces.internal;
+
+import jakarta.persistence.EntityGraph;
+import jakarta.persistence.Subgraph;
+import jakarta.persistence.TypedQuery;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Loads relationships of {@link JPAModelImpl#getFetchColumns()} together with the page,
+ * via a {@code jakarta.persistence.loadgraph} entity graph hint, so displaying nested columns
+ * doesn't lazy-load each row's relationships separately (N+1 queries).
+ * Entity graph is used instead of fetch joins, because fetch joins of collections
+ * don't work together with pagination
+ *
+ * @param <TT> entity type
+ */
+@RequiredArgsConstructor
+final class FetchGraph<TT> {
+    static final String LOAD_GRAPH = "jakarta.persistence.loadgraph";
+    private final JPAModelImpl<TT> model;
+
+    TypedQuery<TT> apply(TypedQuery<TT> query) {
+        if (model.getFetchColumns().isEmpty()) {
+            return query;
+        }
+        EntityGraph<TT> graph = model.getEntityManager().get().createEntityGraph(model.getEntityClass());
+        Map<String, Subgraph<?>> subgraphs = new HashMap<>();
+        for (String column : model.getFetchColumns()) {
+            // last part is the displayed column itself, all parts before it are relationships
+            String[] parts = column.split("\\.");
+            String path = "";
+            Subgraph<?> parent = null;
+            for (int ii = 0; ii < parts.length - 1; ++ii) {
+                String attribute = parts[ii];
+                Subgraph<?> current = parent;
+                path = path + "." + attribute;
+                parent = subgraphs.computeIfAbsent(path, key -> current == null
+                        ? graph.addSubgraph(attribute) : current.addSubgraph(attribute));
+            }
+        }
+        return query.setHint(LOAD_GRAPH, graph);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces.internal;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import java.util.Collection;
+import org.primefaces.model.FilterMeta;
+
+/**
+ * Puts filter values into predicates built by {@link JPAModelImpl}.
+ * Values are literals, which makes each query unique to its filter values.
+ * {@link QueryShapeCache} overrides this to use query parameters instead.
+ */
+class FilterValues {
+    static final FilterValues LITERAL = new FilterValues();
+
+    Predicate like(CriteriaBuilder cb, FilterMeta filter, Expression<String> field, String pattern) {
+        return cb.like(field, pattern);
+    }
+
+    Predicate notLike(CriteriaBuilder cb, FilterMeta filter, Expression<String> field, String pattern) {
+        return cb.notLike(field, pattern);
+    }
+
+    Predicate equal(CriteriaBuilder cb, FilterMeta filter, Expression<?> field, Object value) {
+        return cb.equal(field, value);
+    }
+
+    Predicate notEqual(CriteriaBuilder cb, FilterMeta filter, Expression<?> field, Object value) {
+        return cb.notEqual(field, value);
+    }
+
+    Predicate in(CriteriaBuilder cb, FilterMeta filter, Expression<?> field, Collection<?> values) {
+        return field.in(values);
+    }
+
+    <TC extends Comparable<? super TC>> Predicate lessThan(CriteriaBuilder cb, FilterMeta filter,
+                                                           Expression<TC> field, TC value) {
+        return cb.lessThan(field, value);
+    }
+
+    <TC extends Comparable<? super TC>> Predicate lessThanOrEqualTo(CriteriaBuilder cb, FilterMeta filter,
+                                                                    Expression<TC> field, TC value) {
+        return cb.lessThanOrEqualTo(field, value);
+    }
+
+    <TC extends Comparable<? super TC>> Predicate greaterThan(CriteriaBuilder cb, FilterMeta filter,
+                                                              Expression<TC> field, TC value) {
+        return cb.greaterThan(field, value);
+    }
+
+    <TC extends Comparable<? super TC>> Predicate greaterThanOrEqualTo(CriteriaBuilder cb, FilterMeta filter,
+                                                                       Expression<TC> field, TC value) {
+        return cb.greaterThanOrEqualTo(field, value);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces.internal;
+
+import com.flowlogix.jeedao.primefaces.GlobalSearch;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import java.util.List;
+import org.primefaces.model.FilterMeta;
+import org.primefaces.model.MatchMode;
+
+/**
+ * Global filter predicate of {@link JPAModelImpl} over its searchable attributes,
+ * either via {@link GlobalSearch} strategy, or or'ed {@link MatchMode#CONTAINS} filters by default
+ *
+ * @param <TT> entity type
+ */
+final class GlobalFilter<TT> {
+    private final JPAModelImpl<TT> model;
+    private final IndexedFilter<TT> indexedFilter;
+
+    GlobalFilter(JPAModelImpl<TT> model) {
+        this.model = model;
+        this.indexedFilter = new IndexedFilter<>(model);
+    }
+
+    /**
+     * Global search predicate
+     *
+     * @return predicate, or {@code null} if there is nothing to search
+     */
+    Predicate predicate(CriteriaBuilder cb, Root<TT> root, FilterMeta filterMeta, FilterValues values) {
+        List<String> attributes = model.getSearchAttributes();
+        if (attributes.isEmpty() || filterMeta.getFilterValue() == null
+                || filterMeta.getFilterValue().toString().isBlank()) {
+            return null;
+        }
+        String value = filterMeta.getFilterValue().toString().strip();
+        if (model.getGlobalSearch() != null) {
+            List<Expression<String>> fields = attributes.stream()
+                    .map(attribute -> model.<String>resolveField(root, attribute)).toList();
+            return indexedFilter.narrow(cb, root, filterMeta, attributes,
+                    model.getGlobalSearch().search(cb, root, fields, value), values);
+        }
+        var contains = FilterMeta.builder().field(FilterMeta.GLOBAL_FILTER_KEY)
+                .matchMode(MatchMode.CONTAINS).filterValue(value).build();
+        return indexedFilter.narrow(cb, root, filterMeta, attributes, cb.or(attributes.stream()
+                .map(attribute -> model.predicateFromFilter(cb, model.resolveField(root, attribute),
+                        contains, value, values)).toArray(Predicate[]::new)), values);
+    }
+}
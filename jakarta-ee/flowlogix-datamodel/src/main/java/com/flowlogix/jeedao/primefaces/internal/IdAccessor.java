@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces.internal;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceUnitUtil;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.Metamodel;
+import jakarta.persistence.metamodel.SingularAttribute;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import lombok.SneakyThrows;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.reflect.MethodUtils;
+
+/**
+ * Primary key type and accessor of an entity class, resolved from the JPA {@link Metamodel}
+ * once per entity class and persistence unit, so row keys are read directly from the entity,
+ * without instantiating entities or going through {@link PersistenceUnitUtil#getIdentifier(Object)}.
+ * Entities without a single ID attribute ({@code @IdClass}) are still read via {@link PersistenceUnitUtil}
+ *
+ * @param idType primary key type
+ * @param getter reads primary key from the entity, {@code null} if it can only be read via {@link PersistenceUnitUtil}
+ */
+record IdAccessor(Class<?> idType, MethodHandle getter) {
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    /**
+     * Neither entity classes nor metamodels of undeployed persistence units are retained
+     */
+    private static final ClassValue<Map<Metamodel, IdAccessor>> ACCESSORS = new ClassValue<>() {
+        @Override
+        protected Map<Metamodel, IdAccessor> computeValue(Class<?> type) {
+            return Collections.synchronizedMap(new WeakHashMap<>());
+        }
+    };
+
+    static IdAccessor of(Class<?> entityClass, EntityManager em) {
+        var metamodel = em.getMetamodel();
+        return ACCESSORS.get(entityClass).computeIfAbsent(metamodel, key -> resolve(entityClass, key));
+    }
+
+    @SneakyThrows(Throwable.class)
+    Object read(Object entity, EntityManager em) {
+        if (getter != null) {
+            return (Object) getter.invokeExact(entity);
+        }
+        return em.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity);
+    }
+
+    private static IdAccessor resolve(Class<?> entityClass, Metamodel metamodel) {
+        EntityType<?> entityType = metamodel.entity(entityClass);
+        Class<?> idType = entityType.getIdType() == null ? null : entityType.getIdType().getJavaType();
+        if (!entityType.hasSingleIdAttribute()) {
+            return new IdAccessor(idType, null);
+        }
+        var id = entityType.getSingularAttributes().stream().filter(SingularAttribute::isId).findFirst();
+        return new IdAccessor(idType, id.map(IdAccessor::getter).orElse(null));
+    }
+
+    /**
+     * Prefers getters, so persistence providers' proxies get initialized
+     */
+    @SneakyThrows(IllegalAccessException.class)
+    private static MethodHandle getter(SingularAttribute<?, ?> attribute) {
+        var lookup = MethodHandles.lookup();
+        var declaringClass = attribute.getDeclaringType() == null ? null : attribute.getDeclaringType().getJavaType();
+        Method getter = declaringClass == null ? null : MethodUtils.getAccessibleMethod(declaringClass,
+                "get" + StringUtils.capitalize(attribute.getName()));
+        if (getter != null) {
+            return lookup.unreflect(getter).asType(GETTER_TYPE);
+        } else if (attribute.getJavaMember() instanceof Field field && field.trySetAccessible()) {
+            return lookup.unreflectGetter(field).asType(GETTER_TYPE);
+        } else if (attribute.getJavaMember() instanceof Method method && method.trySetAccessible()) {
+            return lookup.unreflect(method).asType(GETTER_TYPE);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces.internal;
+
+import com.flowlogix.jeedao.primefaces.SearchIndex;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import lombok.RequiredArgsConstructor;
+import org.primefaces.model.FilterMeta;
+import org.primefaces.model.MatchMode;
+
+/**
+ * Narrows down contains and global filters of {@link JPAModelImpl} to primary keys
+ * found in its {@link SearchIndex}, so the database doesn't scan the whole table.
+ * The original predicate is kept, so the index only needs to find a superset of matching rows.
+ * Filters are only narrowed down while the index is current, i.e. contains every row,
+ * so a stale index can't hide rows. A current index that finds no rows replaces the filter
+ * with an always-false predicate, and one that finds more than {@link JPAModelImpl#getSearchIndexMaxIds()}
+ * rows leaves the filter as is, since {@code IN} lists are limited in size
+ *
+ * @param <TT> entity type
+ */
+@RequiredArgsConstructor
+final class IndexedFilter<TT> {
+    private final JPAModelImpl<TT> model;
+
+    /**
+     * Narrow down filter predicate
+     *
+     * @param attributes attributes the filter searches
+     * @param predicate original filter predicate
+     * @return narrowed down predicate, always-false predicate if nothing matches,
+     * or the original one if the index can't be used
+     */
+    Predicate narrow(CriteriaBuilder cb, Root<TT> root, FilterMeta filterMeta, List<String> attributes,
+                     Predicate predicate, FilterValues values) {
+        SearchIndex index = model.getSearchIndex();
+        if (index == null || !index.isCurrent() || predicate == null || !isContains(filterMeta)) {
+            return predicate;
+        }
+        String value = filterMeta.getFilterValue().toString().strip();
+        if (model.isWildcardSupport() && (value.contains("*") || value.contains("?"))) {
+            return predicate;
+        }
+        Set<Object> ids = new HashSet<>();
+        for (String attribute : attributes) {
+            var found = index.find(attribute, value);
+            if (found.isEmpty()) {
+                return predicate;
+            }
+            ids.addAll(found.get());
+            if (ids.size() > model.getSearchIndexMaxIds()) {
+                return predicate;
+            }
+        }
+        // current index contains every row, so nothing else can match
+        return ids.isEmpty() ? cb.disjunction()
+                : cb.and(values.in(cb, filterMeta, root.get(index.getIdAttribute()), ids), predicate);
+    }
+
+    private static boolean isContains(FilterMeta filterMeta) {
+        return filterMeta.getFilterValue() != null
+                && (filterMeta.isGlobalFilter() || filterMeta.getMatchMode() == MatchMode.CONTAINS);
+    }
+}
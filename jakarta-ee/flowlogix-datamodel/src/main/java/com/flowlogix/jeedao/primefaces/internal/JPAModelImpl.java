@@ -17,21 +17,28 @@ package com.flowlogix.jeedao.primefaces.internal;
 
 import com.flowlogix.api.dao.JPAFinder.QueryCriteria;
 import com.flowlogix.api.dao.JPAFinderHelper;
+import com.flowlogix.api.dao.QueryMetrics;
 import com.flowlogix.jeedao.DaoHelper;
 import com.flowlogix.jeedao.primefaces.Filter;
 import com.flowlogix.jeedao.primefaces.Filter.FilterData;
 import com.flowlogix.jeedao.primefaces.Filter.FilterColumnData;
+import com.flowlogix.jeedao.primefaces.GlobalSearch;
 import com.flowlogix.jeedao.primefaces.JPALazyDataModel;
 import com.flowlogix.jeedao.primefaces.JPALazyDataModel.BuilderFunction;
+import com.flowlogix.jeedao.primefaces.JPALazyDataModel.CountStrategy;
 import com.flowlogix.jeedao.primefaces.JPALazyDataModel.FilterCaseConversion;
+import com.flowlogix.jeedao.primefaces.RowCountEstimator;
+import com.flowlogix.jeedao.primefaces.SearchIndex;
 import com.flowlogix.jeedao.primefaces.Sorter;
 import com.flowlogix.jeedao.primefaces.Sorter.MergedSortOrder;
 import com.flowlogix.jeedao.primefaces.Sorter.SortData;
 import com.flowlogix.util.TypeConverter;
-import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.JoinType;
 import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
+import java.time.Duration;
 import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collection;
@@ -39,15 +46,21 @@ import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 import jakarta.faces.component.UIComponent;
 import jakarta.faces.convert.Converter;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.Expression;
@@ -63,9 +76,7 @@ import static java.lang.Math.toIntExact;
 import static java.util.function.UnaryOperator.identity;
 import static lombok.Builder.Default;
 import lombok.Setter;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.reflect.ConstructorUtils;
 import org.omnifaces.util.Faces;
 import org.omnifaces.util.Lazy;
 import org.omnifaces.util.Lazy.SerializableSupplier;
@@ -82,8 +93,15 @@ import org.primefaces.util.Constants;
  */
 @Builder
 @Slf4j
+@SuppressWarnings({"ClassFanOutComplexity", "ClassDataAbstractionCoupling", "MethodCount"})
 public class JPAModelImpl<TT> implements Serializable {
-    private static final long serialVersionUID = 5L;
+    @SuppressWarnings("rawtypes")
+    private static final Filter NO_FILTER = (a, b, c) -> { };
+    @SuppressWarnings("rawtypes")
+    private static final Sorter NO_SORTER = (a, b, c) -> { };
+    private static final long serialVersionUID = 6L;
+    private static final Duration DEFAULT_SHARED_CACHE_EXPIRY = Duration.ofMinutes(5);
+    private static final String QUERY_TIMEOUT_HINT = "jakarta.persistence.query.timeout";
     /**
      * Return entity manager to operate on
      */
@@ -111,12 +129,12 @@ public class JPAModelImpl<TT> implements Serializable {
      * adds {@link Filter} object
      */
     @Default
-    private final transient @Getter @NonNull Filter<TT> filter = (a, b, c) -> { };
+    private final transient @Getter @NonNull Filter<TT> filter = noFilter();
     /**
      * adds {@link Sorter} object
      */
     @Default
-    private final transient @Getter @NonNull Sorter<TT> sorter = (a, b, c) -> { };
+    private final transient @Getter @NonNull Sorter<TT> sorter = noSorter();
     /**
      * add optimizer hints here
      * <p>
@@ -150,8 +168,183 @@ public class JPAModelImpl<TT> implements Serializable {
     @Default
     private final @Getter boolean wildcardSupport = false;
 
+    /**
+     * Use keyset (seek) pagination instead of OFFSET when the next sequential page is requested,
+     * such as when scrolling or paging forward. Random page jumps still use OFFSET.
+     */
+    @Default
+    private final @Getter boolean keysetPagination = false;
+
+    /**
+     * How long to reuse row counts for the same filter criteria, zero (default) disables caching.
+     * Cached counts are also discarded when entities are persisted, updated or removed,
+     * see {@link com.flowlogix.jeedao.primefaces.ModelCacheInvalidator}
+     */
+    @Default
+    private final @Getter @NonNull Duration countCacheExpiry = Duration.ZERO;
+
+    /**
+     * Load the page and the total row count in a single query, instead of separate
+     * {@code COUNT} and page queries. Has no effect together with {@link #keysetPagination}
+     * <p>
+     * Only saves work when paging with the same filter criteria. PrimeFaces calls {@code count()}
+     * before {@code load()} whenever filters change, so the first page of new filter criteria
+     * is still counted separately
+     */
+    @Default
+    private final @Getter boolean pageWithCount = false;
+
+    /**
+     * Bind filter values as query parameters, and reuse the translated query for requests
+     * with the same filter fields, match modes and sort order.
+     * Not used when custom {@link Filter}, {@link Sorter} or {@link GlobalSearch} hooks,
+     * or {@link #searchIndex} are present
+     */
+    @Default
+    private final @Getter boolean queryShapeCache = false;
+
+    /**
+     * Prefetch the next page in the background with this executor, after a full page is loaded.
+     * The executor needs to make the {@link EntityManager} available to its threads,
+     * such as {@code ManagedExecutorService}. Prefetching is disabled if not set (default)
+     */
+    private final transient @Getter Executor prefetchExecutor;
+
+    /**
+     * Number of rows loaded per query by {@link #exportRows(Map, Map)}. Data exporters stream rows
+     * in chunks of this size only when it's set, otherwise, with zero (default),
+     * they load rows page by page as PrimeFaces does
+     */
+    @Default
+    private final @Getter int exportChunkSize = 0;
+
+    /**
+     * How to count rows, exact {@code COUNT(*)} by default
+     */
+    @Default
+    private final @Getter @NonNull CountStrategy countStrategy = CountStrategy.EXACT;
+
+    /**
+     * Maximum number of rows counted by {@link CountStrategy#CAPPED}
+     */
+    @Default
+    private final @Getter int countCap = JPALazyDataModel.DEFAULT_COUNT_CAP;
+
+    /**
+     * Row count estimator, used by {@link CountStrategy#ESTIMATED}
+     */
+    private final transient @Getter RowCountEstimator countEstimator;
+
+    /**
+     * Projection mode: select only these entity attributes (and the primary key), instead of whole entities.
+     * Rows are unmanaged entity instances with only the projected attributes set, so relationships
+     * are not loaded. Empty (default) selects whole entities
+     */
+    @Default
+    private final @Getter @NonNull List<String> projection = List.of();
+
+    /**
+     * Displayed columns in dotted notation, such as {@code userSettings.settingName},
+     * whose relationships are loaded together with the page via an entity graph,
+     * instead of being lazy-loaded row by row
+     */
+    @Default
+    private final @Getter @NonNull List<String> fetchColumns = List.of();
+
+    /**
+     * Attributes searched by the PrimeFaces global filter, in dotted notation for related entities.
+     * Global filter is passed to the {@link Filter} hook only, if empty (default)
+     */
+    @Default
+    private final @Getter @NonNull List<String> searchAttributes = List.of();
+
+    /**
+     * Global search strategy, or'ed {@code LIKE '%value%'} over {@link #searchAttributes} if not set (default)
+     */
+    private final transient @Getter GlobalSearch<TT> globalSearch;
+
+    /**
+     * In-process index used to narrow down contains and global filters,
+     * not used if not set (default)
+     */
+    private final transient @Getter SearchIndex searchIndex;
+
+    /**
+     * Largest number of primary keys {@link #searchIndex} narrows a filter down to, 1,000 by default,
+     * since databases limit the size of {@code IN} lists, such as Oracle's 1,000.
+     * Filters with more matches use the plain predicate
+     */
+    @Default
+    private final @Getter int searchIndexMaxIds = 1_000;
+
+    /**
+     * Share page results and counts application-wide with other models of the same entity class
+     * and the same region, see {@link com.flowlogix.jeedao.primefaces.ModelCacheInvalidator}.
+     * Only models with the same configuration and hooks should share a region,
+     * in particular, hooks must not filter by user.
+     * Not shared if not set (default)
+     */
+    private final @Getter String sharedCacheRegion;
+
+    /**
+     * How long entries of {@link #sharedCacheRegion} are reused, default is 5 minutes.
+     * Bounds staleness when rows are written without going through JPA, such as by other applications
+     */
+    @Default
+    private final @Getter @NonNull Duration sharedCacheExpiry = DEFAULT_SHARED_CACHE_EXPIRY;
+
+    /**
+     * Serialize only the builder, page coordinates and filter / sort criteria of the model,
+     * instead of the loaded rows, to reduce the size of replicated sessions.
+     * Rows of the page are reloaded when they are needed after deserialization
+     */
+    @Default
+    private final @Getter boolean compactSerialization = false;
+
+    /**
+     * Records latency and row counts of model operations and the queries they run,
+     * see {@link QueryMetrics}. Disabled by default
+     */
+    @Default
+    private final transient @Getter @NonNull QueryMetrics metrics = QueryMetrics.NONE;
+
+    /**
+     * Name of the model, used to tag {@link #metrics}, not set by default
+     */
+    private final @Getter String modelName;
+
+    /**
+     * Maximum time each page and count query may run, so runaway filters can't tie up pooled connections.
+     * Applied via the {@code jakarta.persistence.query.timeout} hint, no timeout if zero (default)
+     */
+    @Default
+    private final @Getter @NonNull Duration queryTimeout = Duration.ZERO;
+
+    /**
+     * When a newer load request comes in while a load is still in flight, the older load
+     * skips its remaining queries and the {@link #resultEnricher}, and returns the previously loaded page,
+     * since only the newer result will be shown. Count requests don't supersede loads. Disabled by default
+     */
+    @Default
+    private final @Getter boolean supersedeLoads = false;
+
     private final Lazy<Function<String, ?>> defaultConverter = new Lazy<>(this::createConverter);
     private final Lazy<Function<TT, String>> defaultKeyConverter = new Lazy<>(this::createKeyConverter);
+    private final transient KeysetPagination<TT> keyset = new KeysetPagination<>(this);
+    private final transient CountCache countCache = new CountCache(this);
+    private final transient CombinedPageQuery<TT> combinedQuery = new CombinedPageQuery<>(this);
+    private final transient QueryShapeCache<TT> shapeCache = new QueryShapeCache<>(this);
+    private final transient PagePrefetcher<TT> prefetcher = new PagePrefetcher<>(this);
+    private final transient RowCounter<TT> rowCounter = new RowCounter<>(this);
+    private final transient ProjectionQuery<TT> projectionQuery = new ProjectionQuery<>(this);
+    private final transient FetchGraph<TT> fetchGraph = new FetchGraph<>(this);
+    private final transient GlobalFilter<TT> globalFilter = new GlobalFilter<>(this);
+    private final transient IndexedFilter<TT> indexedFilter = new IndexedFilter<>(this);
+    private final transient SharedResultCache<TT> sharedCache = new SharedResultCache<>(this);
+    /**
+     * Locale of the request, for background queries that run without {@link jakarta.faces.context.FacesContext}
+     */
+    private final transient ThreadLocal<Locale> requestLocale = new ThreadLocal<>();
 
     /**
      * @hidden
@@ -189,6 +382,28 @@ public class JPAModelImpl<TT> implements Serializable {
         return initializer.builder.apply(builderInstance);
     }
 
+    /**
+     * Filter that doesn't change filter criteria, default for {@link #filter}
+     *
+     * @return filter, always the same instance
+     * @param <TT>
+     */
+    @SuppressWarnings("unchecked")
+    static <TT> Filter<TT> noFilter() {
+        return NO_FILTER;
+    }
+
+    /**
+     * Sorter that doesn't change sort criteria, default for {@link #sorter}
+     *
+     * @return sorter, always the same instance
+     * @param <TT>
+     */
+    @SuppressWarnings("unchecked")
+    static <TT> Sorter<TT> noSorter() {
+        return NO_SORTER;
+    }
+
     /**
      * partial builder, just for javadoc
      * @hidden
@@ -197,13 +412,53 @@ public class JPAModelImpl<TT> implements Serializable {
     public static class JPAModelImplBuilder<TT> { }
 
     public int count(Map<String, FilterMeta> filters) {
-        return toIntExact(jpaFinder.get().count(cqc -> cqc.query().where(getFilters(filters, cqc.builder(), cqc.root()))));
+        return toIntExact(combinedQuery.lastCount(filters).orElseGet(() -> countCache.count(filters,
+                () -> sharedCacheRegion == null ? rowCounter.count(filters)
+                        : sharedCache.count(filters, () -> rowCounter.count(filters)))));
+    }
+
+    /**
+     * Row count that came with the last page, see {@link #isPageWithCount()}
+     *
+     * @param filters
+     * @return count, or empty if the last page wasn't loaded with a count for these filters
+     */
+    public OptionalLong pageCount(Map<String, FilterMeta> filters) {
+        return combinedQuery.lastCount(filters);
+    }
+
+    long exactCount(Map<String, FilterMeta> filters) {
+        return shapeCache.isEnabled() ? shapeCache.count(filters) : jpaFinder.get()
+                .count(cqc -> cqc.query().where(getFilters(filters, cqc.builder(), cqc.root())), this::withTimeout);
     }
 
     public List<TT> findRows(int first, int pageSize, Map<String, FilterMeta> filters, Map<String, SortMeta> sortMeta) {
-        return resultEnricher.apply(optimizer.apply(
-                jpaFinder.get().findRange(Integer.max(first, 0), Integer.max(first + pageSize, 1),
-                        qc -> addToCriteria(qc, filters, sortMeta))).getResultList());
+        return findRows(first, pageSize, filters, sortMeta, () -> false);
+    }
+
+    /**
+     * Page rows, or no rows if the load is superseded by a newer request, see {@link #isSupersedeLoads()}.
+     * {@link JPALazyDataModel} shows its previously loaded page instead of the superseded load's rows
+     *
+     * @param first
+     * @param pageSize
+     * @param filters
+     * @param sortMeta
+     * @param superseded whether a newer request came in
+     * @return enriched page rows
+     */
+    public List<TT> findRows(int first, int pageSize, Map<String, FilterMeta> filters, Map<String, SortMeta> sortMeta,
+                             BooleanSupplier superseded) {
+        if (superseded.getAsBoolean()) {
+            return List.of();
+        }
+        List<TT> rows = prefetchExecutor != null ? prefetcher.findRows(first, pageSize, filters, sortMeta)
+                : findPage(first, pageSize, filters, sortMeta);
+        if (superseded.getAsBoolean()) {
+            log.debug("Load of {} superseded, skipping result enricher", entityClass.getName());
+            return List.of();
+        }
+        return resultEnricher.apply(rows);
     }
 
     public Supplier<EntityManager> getEntityManager() {
@@ -219,37 +474,109 @@ public class JPAModelImpl<TT> implements Serializable {
         return keyConverter != null ? keyConverter : defaultKeyConverter.get();
     }
 
+    /**
+     * Stream all rows matching the filter and sort criteria, such as everything the user currently sees,
+     * for export. Rows are loaded in chunks of {@link #getExportChunkSize()}, and the persistence context
+     * is cleared before each subsequent chunk is loaded, so memory use doesn't grow with the number of rows.
+     * Clearing detaches all entities managed by the entity manager, not only the exported ones.
+     * Result enricher is applied to each chunk.
+     *
+     * @param filters filter criteria
+     * @param sortMeta sort criteria
+     * @return lazily-loaded rows
+     * @throws IllegalStateException if {@link #getExportChunkSize()} isn't set
+     */
+    public Stream<TT> exportRows(Map<String, FilterMeta> filters, Map<String, SortMeta> sortMeta) {
+        if (exportChunkSize <= 0) {
+            throw new IllegalStateException("exportChunkSize is not set");
+        }
+        return new RowExport<>(this, filters, sortMeta).stream();
+    }
+
+    /**
+     * Page rows, before they are enriched
+     */
+    List<TT> findPage(int first, int pageSize, Map<String, FilterMeta> filters, Map<String, SortMeta> sortMeta) {
+        if (sharedCacheRegion != null) {
+            return sharedCache.findRows(first, pageSize, filters, sortMeta,
+                    () -> queryPage(first, pageSize, filters, sortMeta));
+        }
+        return queryPage(first, pageSize, filters, sortMeta);
+    }
+
+    private List<TT> queryPage(int first, int pageSize, Map<String, FilterMeta> filters, Map<String, SortMeta> sortMeta) {
+        if (!projection.isEmpty()) {
+            return projectionQuery.findRows(first, pageSize, filters, sortMeta);
+        } else if (keysetPagination) {
+            return keyset.findRows(first, pageSize, filters, sortMeta);
+        } else if (pageWithCount) {
+            return combinedQuery.findRows(first, pageSize, filters, sortMeta);
+        } else if (shapeCache.isEnabled()) {
+            return shapeCache.findRows(first, pageSize, filters, sortMeta);
+        }
+        return optimize(jpaFinder.get().findRange(Integer.max(first, 0), Integer.max(first + pageSize, 1),
+                qc -> addToCriteria(qc, filters, sortMeta))).getResultList();
+    }
+
+    /**
+     * Apply fetch graph and the optimizer to the entity page query
+     */
+    TypedQuery<TT> optimize(TypedQuery<TT> query) {
+        return optimizer.apply(fetchGraph.apply(withTimeout(query)));
+    }
+
+    /**
+     * Apply {@link #queryTimeout} to the query
+     */
+    <QQ extends Query> QQ withTimeout(QQ query) {
+        if (!queryTimeout.isZero() && !queryTimeout.isNegative()) {
+            query.setHint(QUERY_TIMEOUT_HINT, queryTimeout.toMillis());
+        }
+        return query;
+    }
+
+    JPAFinderHelper<TT> getJpaFinder() {
+        return jpaFinder.get();
+    }
+
     private JPAFinderHelper<TT> createJPAFinder() {
         if (entityManager != null) {
-            return new DaoHelper<>(entityManager, entityClass);
+            return new DaoHelper<>(entityManager, entityClass, metrics);
         } else {
-            return new DaoHelper<>(findEntityManager(entityManagerQualifiers), entityClass);
+            return new DaoHelper<>(findEntityManager(entityManagerQualifiers), entityClass, metrics);
         }
     }
 
     private Function<String, ?> createConverter() {
-        return keyValue -> TypeConverter.valueOf(keyValue, getPrimaryKeyClass());
+        return keyValue -> TypeConverter.valueOf(keyValue, idAccessor().idType());
     }
 
     private Function<TT, String> createKeyConverter() {
-        return entry -> getPrimaryKey(Optional.of(entry)).toString();
+        return entry -> idAccessor().read(entry, getEntityManager().get()).toString();
     }
 
-    private void addToCriteria(QueryCriteria<TT> qc, Map<String, FilterMeta> filters, Map<String, SortMeta> sortMeta) {
+    void addToCriteria(QueryCriteria<TT> qc, Map<String, FilterMeta> filters, Map<String, SortMeta> sortMeta) {
         qc.query().where(getFilters(filters, qc.builder(), qc.root()));
         qc.query().orderBy(getSort(sortMeta, qc.builder(), qc.root()));
         qc.root().alias(JPALazyDataModel.RESULT);
     }
 
     public Predicate getFilters(Map<String, FilterMeta> filters, CriteriaBuilder cb, Root<TT> root) {
+        return getFilters(filters, cb, root, FilterValues.LITERAL);
+    }
+
+    Predicate getFilters(Map<String, FilterMeta> filters, CriteriaBuilder cb, Root<TT> root, FilterValues values) {
         FilterData predicates = new FilterDataMap();
         filters.values().forEach(filterMeta -> {
             if (filterMeta.isGlobalFilter()) {
-                predicates.put(filterMeta.getField(), new FilterColumnData(filterMeta.getFilterValue(), null));
+                predicates.put(filterMeta.getField(), new FilterColumnData(filterMeta.getFilterValue(),
+                        globalFilter.predicate(cb, root, filterMeta, values)));
             } else {
                 if (filterMeta.getFilterValue() != null) {
-                    var filterMetas = processFilterMeta(cb, root, filterMeta.getField(), filterMeta);
-                    predicates.put(filterMeta.getField(), new FilterColumnData(filterMetas.value(), filterMetas.cond()));
+                    var filterMetas = processFilterMeta(cb, root, filterMeta.getField(), filterMeta, values);
+                    predicates.put(filterMeta.getField(), new FilterColumnData(filterMetas.value(),
+                            indexedFilter.narrow(cb, root, filterMeta, List.of(filterMeta.getField()),
+                                    filterMetas.cond(), values)));
                 }
             }
         });
@@ -274,21 +601,22 @@ public class JPAModelImpl<TT> implements Serializable {
      * @param <YY> expression type
      */
     public <YY> Expression<YY> resolveField(Root<TT> root, String fieldName) {
-        Join<?, ?> join = null;
-        // traverse all dotted fields, and join each
+        From<?, ?> from = root;
+        // traverse all dotted fields, and join each, reusing joins already made by this query,
+        // so a column that's both filtered and sorted doesn't multiply rows by joining twice
         while (fieldName.contains(".")) {
             String partial = fieldName.substring(0, fieldName.indexOf("."));
             fieldName = fieldName.substring(partial.length() + 1);
-            if (join == null) {
-                join = root.join(partial);
-            } else {
-                join = join.join(partial);
-            }
+            From<?, ?> parent = from;
+            from = parent.getJoins().stream().filter(join -> join.getJoinType() == JoinType.INNER
+                            && join.getAttribute() != null && partial.equals(join.getAttribute().getName()))
+                    .findFirst().orElseGet(() -> parent.join(partial));
         }
-        return join == null ? root.get(fieldName) : join.get(fieldName);
+        return from.get(fieldName);
     }
 
-    private FilterMetaResult processFilterMeta(CriteriaBuilder cb, Root<TT> root, String key, FilterMeta filterMeta) {
+    private FilterMetaResult processFilterMeta(CriteriaBuilder cb, Root<TT> root, String key, FilterMeta filterMeta,
+                                               FilterValues values) {
         Predicate cond = null;
         Object value = Objects.requireNonNullElse(filterMeta.getFilterValue(), Constants.EMPTY_STRING);
         try {
@@ -298,20 +626,21 @@ public class JPAModelImpl<TT> implements Serializable {
             boolean compositeFilterType = filterType.isArray() || Collection.class.isAssignableFrom(filterType);
             if (fieldType == String.class) {
                 value = value.toString();
-                cond = predicateFromFilter(cb, field, filterMeta, value);
+                cond = predicateFromFilter(cb, field, filterMeta, value, values);
             } else if (fieldType.equals(filterType) || compositeFilterType) {
-                cond = predicateFromFilterOrComparable(cb, field, filterMeta, value, fieldType, compositeFilterType);
+                cond = predicateFromFilterOrComparable(cb, field, filterMeta, value, fieldType, compositeFilterType,
+                        values);
             } else {
                 value = convert(value, fieldType);
                 if (value != null) {
-                    cond = predicateFromFilterOrComparable(cb, field, filterMeta, value, fieldType, false);
+                    cond = predicateFromFilterOrComparable(cb, field, filterMeta, value, fieldType, false, values);
                 }
             }
         } catch (IllegalArgumentException e) { /* ignore possibly extra filter columns */ }
         return new FilterMetaResult(cond, value);
     }
 
-    private Object convert(Object value, Class<?> fieldType) {
+    Object convert(Object value, Class<?> fieldType) {
         Object convertedValue = null;
         var checkedConvertedValue = TypeConverter.checkAndConvert(value.toString(), fieldType);
         if (checkedConvertedValue.isValid()) {
@@ -335,7 +664,7 @@ public class JPAModelImpl<TT> implements Serializable {
     @SuppressWarnings({"unchecked", "rawtypes"})
     private Predicate predicateFromFilterOrComparable(CriteriaBuilder cb, Expression<?> field,
                                                       FilterMeta filterMeta, Object value, Class<?> fieldType,
-                                                      boolean compositeFilterType) {
+                                                      boolean compositeFilterType, FilterValues values) {
         Predicate cond;
         if (compositeFilterType) {
             if (value.getClass().isArray()) {
@@ -347,14 +676,14 @@ public class JPAModelImpl<TT> implements Serializable {
                     new IllegalArgumentException(String.format("Can't convert filter: %s to %s",
                             raw, fieldType)))).toList();
         }
-        cond = predicateFromFilter(cb, field, filterMeta, value);
+        cond = predicateFromFilter(cb, field, filterMeta, value, values);
         if (cond == null && Comparable.class.isAssignableFrom(fieldType)) {
             Comparable<? super Comparable> cv = null;
             if (value instanceof Comparable<?>) {
                 cv = (Comparable) value;
             }
             Expression<Comparable<? super Comparable>> comparableField = (Expression<Comparable<? super Comparable>>) field;
-            cond = predicateFromFilterComparable(cb, comparableField, filterMeta, cv, value);
+            cond = predicateFromFilterComparable(cb, comparableField, filterMeta, cv, value, values);
         }
         return cond;
     }
@@ -378,7 +707,7 @@ public class JPAModelImpl<TT> implements Serializable {
                     case LOWER -> cb.lower(stringExpression);
                     case UPPER -> cb.upper(stringExpression);
                 };
-                var locale = Faces.getLocale();
+                var locale = getLocale();
                 this.value = switch (filterCaseConversion) {
                     case LOWER -> wildcardValue.value.toLowerCase(locale);
                     case UPPER -> wildcardValue.value.toUpperCase(locale);
@@ -393,79 +722,93 @@ public class JPAModelImpl<TT> implements Serializable {
         }
     }
 
-    @SuppressWarnings({"CyclomaticComplexity", "ReturnCount", "MissingSwitchDefault"})
     Predicate predicateFromFilter(CriteriaBuilder cb, Expression<?> expression,
             FilterMeta filter, Object filterValue) {
+        return predicateFromFilter(cb, expression, filter, filterValue, FilterValues.LITERAL);
+    }
+
+    @SuppressWarnings({"CyclomaticComplexity", "ReturnCount", "MissingSwitchDefault"})
+    Predicate predicateFromFilter(CriteriaBuilder cb, Expression<?> expression,
+            FilterMeta filter, Object filterValue, FilterValues values) {
         var stringExpression = new Lazy<>(() -> new ExpressionEvaluator(cb, expression, filterValue));
         Lazy<Collection<?>> filterValueAsCollection = new Lazy<>(() -> (Collection<?>) filterValue);
         switch (filter.getMatchMode()) {
             case STARTS_WITH:
-                return cb.like(stringExpression.get().expression, stringExpression.get().value + "%");
+                return values.like(cb, filter, stringExpression.get().expression, stringExpression.get().value + "%");
             case NOT_STARTS_WITH:
-                return cb.notLike(stringExpression.get().expression, stringExpression.get().value + "%");
+                return values.notLike(cb, filter, stringExpression.get().expression, stringExpression.get().value + "%");
             case ENDS_WITH:
-                return cb.like(stringExpression.get().expression, "%" + stringExpression.get().value);
+                return values.like(cb, filter, stringExpression.get().expression, "%" + stringExpression.get().value);
             case NOT_ENDS_WITH:
-                return cb.notLike(stringExpression.get().expression, "%" + stringExpression.get().value);
+                return values.notLike(cb, filter, stringExpression.get().expression, "%" + stringExpression.get().value);
             case CONTAINS:
-                return cb.like(stringExpression.get().expression, "%" + stringExpression.get().value + "%");
+                return values.like(cb, filter, stringExpression.get().expression,
+                        "%" + stringExpression.get().value + "%");
             case NOT_CONTAINS:
-                return cb.notLike(stringExpression.get().expression, "%" + stringExpression.get().value + "%");
+                return values.notLike(cb, filter, stringExpression.get().expression,
+                        "%" + stringExpression.get().value + "%");
             case EXACT:
                 if (wildcardSupport && stringExpression.get().hasWildcards) {
-                    return cb.like(stringExpression.get().expression, stringExpression.get().value);
+                    return values.like(cb, filter, stringExpression.get().expression, stringExpression.get().value);
                 } else {
-                    return cb.equal(expression, filterValue);
+                    return values.equal(cb, filter, expression, filterValue);
                 }
             case EQUALS:
-                return cb.equal(expression, filterValue);
+                return values.equal(cb, filter, expression, filterValue);
             case NOT_EXACT, NOT_EQUALS:
-                return cb.notEqual(expression, filterValue);
+                return values.notEqual(cb, filter, expression, filterValue);
             case IN:
                 return filterValueAsCollection.get().size() == 1
-                        ? cb.equal(expression, filterValueAsCollection.get().iterator().next())
-                        : expression.in(filterValueAsCollection.get());
+                        ? values.equal(cb, filter, expression, filterValueAsCollection.get().iterator().next())
+                        : values.in(cb, filter, expression, filterValueAsCollection.get());
             case NOT_IN:
                 return filterValueAsCollection.get().size() == 1
-                        ? cb.notEqual(expression, filterValueAsCollection.get().iterator().next())
-                        : expression.in(filterValueAsCollection.get()).not();
+                        ? values.notEqual(cb, filter, expression, filterValueAsCollection.get().iterator().next())
+                        : values.in(cb, filter, expression, filterValueAsCollection.get()).not();
             case GLOBAL:
-                throw new UnsupportedOperationException("MatchMode.GLOBAL currently not supported!");
+                throw new UnsupportedOperationException("MatchMode.GLOBAL is only supported for the global filter");
         }
         return null;
     }
 
-    @SuppressWarnings("MissingSwitchDefault")
     <TC extends Comparable<? super TC>> Predicate predicateFromFilterComparable(CriteriaBuilder cb,
             Expression<TC> objectExpression, FilterMeta filter, TC filterValue, Object filterValueCollection) {
+        return predicateFromFilterComparable(cb, objectExpression, filter, filterValue, filterValueCollection,
+                FilterValues.LITERAL);
+    }
+
+    @SuppressWarnings("MissingSwitchDefault")
+    <TC extends Comparable<? super TC>> Predicate predicateFromFilterComparable(CriteriaBuilder cb,
+            Expression<TC> objectExpression, FilterMeta filter, TC filterValue, Object filterValueCollection,
+            FilterValues values) {
         @SuppressWarnings("unchecked")
         Lazy<Collection<TC>> filterValueAsCollection = new Lazy<>(() -> (Collection<TC>) filterValueCollection);
         switch (filter.getMatchMode()) {
             case LESS_THAN:
-                return cb.lessThan(objectExpression, filterValue);
+                return values.lessThan(cb, filter, objectExpression, filterValue);
             case LESS_THAN_EQUALS:
-                return cb.lessThanOrEqualTo(objectExpression, filterValue);
+                return values.lessThanOrEqualTo(cb, filter, objectExpression, filterValue);
             case GREATER_THAN:
-                return cb.greaterThan(objectExpression, filterValue);
+                return values.greaterThan(cb, filter, objectExpression, filterValue);
             case GREATER_THAN_EQUALS:
-                return cb.greaterThanOrEqualTo(objectExpression, filterValue);
+                return values.greaterThanOrEqualTo(cb, filter, objectExpression, filterValue);
             case BETWEEN:
-                return between(cb, objectExpression, filterValueAsCollection);
+                return between(cb, filter, objectExpression, filterValueAsCollection, values);
             case NOT_BETWEEN:
-                return between(cb, objectExpression, filterValueAsCollection).not();
+                return between(cb, filter, objectExpression, filterValueAsCollection, values).not();
         }
         return null;
     }
 
-    private <TC extends Comparable<? super TC>> Predicate between(CriteriaBuilder cb,
-            Expression<TC> objectExpression, Lazy<Collection<TC>> filterValueAsCollection) {
+    private <TC extends Comparable<? super TC>> Predicate between(CriteriaBuilder cb, FilterMeta filter,
+            Expression<TC> objectExpression, Lazy<Collection<TC>> filterValueAsCollection, FilterValues values) {
         Iterator<TC> iterBetween = filterValueAsCollection.get().iterator();
-        return cb.and(cb.greaterThanOrEqualTo(objectExpression, iterBetween.next()),
-                cb.lessThanOrEqualTo(objectExpression, iterBetween.next()));
+        return cb.and(values.greaterThanOrEqualTo(cb, filter, objectExpression, iterBetween.next()),
+                values.lessThanOrEqualTo(cb, filter, objectExpression, iterBetween.next()));
     }
 
     @SuppressWarnings("MissingSwitchDefault")
-    private List<Order> processSortOrder(Map<String, MergedSortOrder> sortMeta, CriteriaBuilder cb, Root<TT> root) {
+    List<Order> processSortOrder(Map<String, MergedSortOrder> sortMeta, CriteriaBuilder cb, Root<TT> root) {
         Deque<Order> sortMetaOrdering = new ArrayDeque<>();
         sortMeta.values().forEach(order -> {
             if (order.getRequestedSortMeta() != null) {
@@ -487,14 +830,31 @@ public class JPAModelImpl<TT> implements Serializable {
         return sortMetaOrdering.stream().toList();
     }
 
-    @SneakyThrows(ReflectiveOperationException.class)
-    private Object getPrimaryKey(Optional<TT> entry) {
-        return jpaFinder.get().getEntityManager().get().getEntityManagerFactory().getPersistenceUnitUtil()
-                .getIdentifier(entry.orElse(ConstructorUtils.invokeConstructor(getEntityClass())));
+    /**
+     * Run the query with the request's locale, such as on a background thread
+     *
+     * @param locale request locale
+     * @param query
+     * @return query result
+     */
+    <RR> RR withLocale(Locale locale, Supplier<RR> query) {
+        requestLocale.set(locale);
+        try {
+            return query.get();
+        } finally {
+            requestLocale.remove();
+        }
     }
 
-    private Class<?> getPrimaryKeyClass() {
-        return getPrimaryKey(Optional.empty()).getClass();
+    /**
+     * @return locale used to convert case of filter values
+     */
+    Locale getLocale() {
+        return Optional.ofNullable(requestLocale.get()).orElseGet(Faces::getLocale);
+    }
+
+    private IdAccessor idAccessor() {
+        return IdAccessor.of(entityClass, getEntityManager().get());
     }
 
     /**
@@ -505,8 +865,31 @@ public class JPAModelImpl<TT> implements Serializable {
      * @throws ObjectStreamException
      */
     Object readResolve() throws ObjectStreamException {
-        var corrected = create(x_do_not_use_in_builder);
-        corrected.x_do_not_use_in_builder = x_do_not_use_in_builder;
-        return corrected;
+        return CompactForm.restore(x_do_not_use_in_builder);
+    }
+
+    /**
+     * Writes only the builder in compact form, see {@link #compactSerialization}
+     *
+     * @return compact form, or this object
+     * @throws ObjectStreamException
+     */
+    Object writeReplace() throws ObjectStreamException {
+        return compactSerialization ? new CompactForm<>(x_do_not_use_in_builder) : this;
+    }
+
+    /**
+     * Compact serialized form, the model is recreated from its builder
+     */
+    private record CompactForm<TT>(BuilderInitializer<TT> initializer) implements Serializable {
+        Object readResolve() throws ObjectStreamException {
+            return restore(initializer);
+        }
+
+        static <TT> JPAModelImpl<TT> restore(BuilderInitializer<TT> initializer) {
+            var corrected = create(initializer);
+            corrected.x_do_not_use_in_builder = initializer;
+            return corrected;
+        }
     }
 }
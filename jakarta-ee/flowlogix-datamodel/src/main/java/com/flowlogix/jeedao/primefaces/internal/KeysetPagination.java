@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces.internal;
+
+import com.flowlogix.api.dao.JPAFinder.QueryCriteria;
+import com.flowlogix.jeedao.primefaces.JPALazyDataModel;
+import com.flowlogix.jeedao.primefaces.Sorter.MergedSortOrder;
+import com.flowlogix.jeedao.primefaces.Sorter.SortData;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.Metamodel;
+import jakarta.persistence.metamodel.SingularAttribute;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.reflect.MethodUtils;
+import org.primefaces.model.FilterMeta;
+import org.primefaces.model.SortMeta;
+import org.primefaces.model.SortOrder;
+
+/**
+ * Keyset (seek) pagination for {@link JPAModelImpl}
+ * <p>
+ * Remembers sort key values of the last row of the previous page. When the next sequential
+ * page is requested with the same filter and sort criteria, OFFSET is replaced with
+ * a predicate that seeks past the last row, i.e. {@code WHERE (sortcols) > (:last)},
+ * expanded into the equivalent {@code OR} chain, since JPA has no row value comparisons.
+ * Primary key is added as the last sort column, so the key is always unique.
+ * <p>
+ * Random page jumps, application sort criteria (which can't be read back from the entity),
+ * nullable sort columns (since {@code NULL} values never satisfy the seek predicate, such rows would be skipped),
+ * {@code null} key values and composite primary keys fall back to OFFSET pagination.
+ *
+ * @param <TT> entity type
+ */
+@RequiredArgsConstructor
+final class KeysetPagination<TT> {
+    private final JPAModelImpl<TT> model;
+    private final AtomicReference<Position> position = new AtomicReference<>();
+
+    /**
+     * Where the previous page ended
+     *
+     * @param criteria filter and sort criteria of the previous page
+     * @param nextRow index of the row right after the previous page
+     * @param lastKeys sort key values of the last row, or {@code null} if seek is not possible
+     */
+    private record Position(CriteriaKey criteria, int nextRow, List<Object> lastKeys) { }
+    private record KeyColumn(String field, boolean ascending, List<SingularAttribute<?, ?>> attributes,
+                             boolean tiebreaker) { }
+    private record Plan(List<KeyColumn> columns, boolean seek) { }
+
+    List<TT> findRows(int first, int pageSize, Map<String, FilterMeta> filters, Map<String, SortMeta> sortMeta) {
+        var criteria = CriteriaKey.of(filters, sortMeta);
+        var previous = position.get();
+        List<Object> lastKeys = previous != null && first > 0 && previous.nextRow() == first
+                && previous.criteria().equals(criteria) ? previous.lastKeys() : null;
+        var plan = new AtomicReference<>(new Plan(List.of(), false));
+        var query = model.getJpaFinder().findAll(qc -> plan.set(addToCriteria(qc, filters, sortMeta, lastKeys)));
+        if (!plan.get().seek()) {
+            query.setFirstResult(Integer.max(first, 0));
+        }
+        query.setMaxResults(Integer.max(first + pageSize, 1) - Integer.max(first, 0));
+        List<TT> rows = model.optimize(query).getResultList();
+        position.set(new Position(criteria, Integer.max(first, 0) + rows.size(),
+                lastKeys(rows, plan.get().columns())));
+        return rows;
+    }
+
+    private Plan addToCriteria(QueryCriteria<TT> qc, Map<String, FilterMeta> filters,
+                               Map<String, SortMeta> sortMeta, List<Object> lastKeys) {
+        var sortData = new SortData(sortMeta);
+        model.getSorter().sort(sortData, qc.builder(), qc.root());
+        List<Order> orders = new ArrayList<>(model.processSortOrder(sortData.getSortOrder(), qc.builder(), qc.root()));
+        List<KeyColumn> columns = keyColumns(sortData);
+        Predicate where = model.getFilters(filters, qc.builder(), qc.root());
+        boolean seek = lastKeys != null && !columns.isEmpty() && lastKeys.size() == columns.size();
+        if (!columns.isEmpty() && columns.get(columns.size() - 1).tiebreaker()) {
+            orders.add(qc.builder().asc(model.resolveField(qc.root(), columns.get(columns.size() - 1).field())));
+        }
+        if (seek) {
+            where = qc.builder().and(where, seekPredicate(qc.builder(), qc.root(), columns, lastKeys));
+        }
+        qc.query().where(where);
+        qc.query().orderBy(orders);
+        qc.root().alias(JPALazyDataModel.RESULT);
+        return new Plan(columns, seek);
+    }
+
+    /**
+     * Sort columns, followed by the primary key as a tiebreaker (unless it's already sorted on),
+     * or empty list if keyset pagination isn't possible
+     */
+    @SuppressWarnings("ReturnCount")
+    private List<KeyColumn> keyColumns(SortData sortData) {
+        var metamodel = model.getEntityManager().get().getMetamodel();
+        var columns = new ArrayList<KeyColumn>();
+        for (MergedSortOrder order : sortData.getSortOrder().values()) {
+            var sortMeta = order.getRequestedSortMeta();
+            if (sortMeta == null) {
+                return List.of();
+            } else if (sortMeta.getOrder() == SortOrder.ASCENDING || sortMeta.getOrder() == SortOrder.DESCENDING) {
+                var attributes = resolveAttributes(metamodel, sortMeta.getField());
+                if (attributes.isEmpty() || attributes.get().stream().anyMatch(SingularAttribute::isOptional)) {
+                    return List.of();
+                }
+                columns.add(new KeyColumn(sortMeta.getField(), sortMeta.getOrder() == SortOrder.ASCENDING,
+                        attributes.get(), false));
+            }
+        }
+        var primaryKey = primaryKeyAttribute(metamodel);
+        if (primaryKey.isEmpty()) {
+            return List.of();
+        }
+        if (columns.stream().noneMatch(column -> column.field().equals(primaryKey.get().getName()))) {
+            columns.add(new KeyColumn(primaryKey.get().getName(), true, List.of(primaryKey.get()), true));
+        }
+        return columns;
+    }
+
+    private Optional<SingularAttribute<?, ?>> primaryKeyAttribute(Metamodel metamodel) {
+        try {
+            var entityType = metamodel.entity(model.getEntityClass());
+            if (!entityType.hasSingleIdAttribute()) {
+                return Optional.empty();
+            }
+            return entityType.getSingularAttributes().stream()
+                    .filter(SingularAttribute::isId).findFirst().map(attribute -> attribute);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Only singular attributes (including through to-one relationships and embeddables)
+     * can be read back from the last row of the page
+     */
+    private Optional<List<SingularAttribute<?, ?>>> resolveAttributes(Metamodel metamodel, String field) {
+        try {
+            ManagedType<?> type = metamodel.managedType(model.getEntityClass());
+            var attributes = new ArrayList<SingularAttribute<?, ?>>();
+            for (String name : field.split("\\.")) {
+                if (type == null || !(type.getAttribute(name) instanceof SingularAttribute<?, ?> attribute)) {
+                    return Optional.empty();
+                }
+                attributes.add(attribute);
+                type = attribute.getType() instanceof ManagedType<?> managedType ? managedType : null;
+            }
+            return Optional.of(attributes);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Predicate seekPredicate(CriteriaBuilder cb, Root<TT> root, List<KeyColumn> columns, List<Object> lastKeys) {
+        var alternatives = new ArrayList<Predicate>();
+        var equalities = new ArrayList<Predicate>();
+        for (int ii = 0; ii < columns.size(); ++ii) {
+            Expression<Comparable> field = model.resolveField(root, columns.get(ii).field());
+            var value = (Comparable) lastKeys.get(ii);
+            Predicate beyond = columns.get(ii).ascending() ? cb.greaterThan(field, value) : cb.lessThan(field, value);
+            alternatives.add(cb.and(Stream.concat(equalities.stream(), Stream.of(beyond)).toArray(Predicate[]::new)));
+            equalities.add(cb.equal(field, value));
+        }
+        return cb.or(alternatives.toArray(Predicate[]::new));
+    }
+
+    private static List<Object> lastKeys(List<?> rows, List<KeyColumn> columns) {
+        if (rows.isEmpty() || columns.isEmpty()) {
+            return null;
+        }
+        Object lastRow = rows.get(rows.size() - 1);
+        var keys = columns.stream().map(column -> readValue(lastRow, column.attributes())).toList();
+        return keys.stream().allMatch(Comparable.class::isInstance) ? keys : null;
+    }
+
+    private static Object readValue(Object entity, List<SingularAttribute<?, ?>> attributes) {
+        Object value = entity;
+        for (var attribute : attributes) {
+            if (value == null) {
+                break;
+            }
+            value = readAttribute(value, attribute);
+        }
+        return value;
+    }
+
+    /**
+     * Prefers getters, so lazy relationships get loaded by the persistence provider
+     */
+    @SneakyThrows(ReflectiveOperationException.class)
+    private static Object readAttribute(Object target, Attribute<?, ?> attribute) {
+        String name = StringUtils.capitalize(attribute.getName());
+        Method getter = Optional.ofNullable(MethodUtils.getAccessibleMethod(target.getClass(), "get" + name))
+                .orElseGet(() -> MethodUtils.getAccessibleMethod(target.getClass(), "is" + name));
+        if (getter != null) {
+            return getter.invoke(target);
+        } else if (attribute.getJavaMember() instanceof Field field && field.trySetAccessible()) {
+            return field.get(target);
+        } else if (attribute.getJavaMember() instanceof Method method && method.trySetAccessible()) {
+            return method.invoke(target);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces.internal;
+
+import jakarta.persistence.criteria.Root;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.primefaces.model.FilterMeta;
+import org.primefaces.model.SortMeta;
+
+/**
+ * Prefetches the next page in the background for {@link JPAModelImpl#getPrefetchExecutor()},
+ * so sequential paging and virtual scrolling are served from memory.
+ * Prefetched pages are kept in a small, bounded buffer, and are cancelled
+ * and discarded when filter or sort criteria change.
+ * <p>
+ * Background threads have no {@link jakarta.faces.context.FacesContext}, so filter values
+ * are converted to their field types, and the locale is captured, on the request thread.
+ *
+ * @param <TT> entity type
+ */
+@Slf4j
+@RequiredArgsConstructor
+final class PagePrefetcher<TT> {
+    private static final int MAX_PAGES = 2;
+    private final JPAModelImpl<TT> model;
+    /**
+     * Guarded by itself, as is {@link #criteria}
+     */
+    private final Map<PageKey, Future<List<TT>>> pages = new LinkedHashMap<>();
+    private CriteriaKey criteria;
+
+    private record PageKey(int first, int pageSize) { }
+
+    List<TT> findRows(int first, int pageSize, Map<String, FilterMeta> filters, Map<String, SortMeta> sortMeta) {
+        var key = CriteriaKey.of(filters, sortMeta);
+        Future<List<TT>> prefetched;
+        synchronized (pages) {
+            if (!key.equals(criteria)) {
+                cancelAll();
+                criteria = key;
+            }
+            prefetched = pages.remove(new PageKey(first, pageSize));
+        }
+        List<TT> rows = prefetched == null ? null : await(prefetched);
+        if (rows == null) {
+            rows = model.findPage(first, pageSize, filters, sortMeta);
+        }
+        if (rows.size() == pageSize) {
+            prefetch(new PageKey(Integer.max(first, 0) + pageSize, pageSize), key, copyFilters(filters),
+                    copySort(sortMeta));
+        }
+        return rows;
+    }
+
+    private void prefetch(PageKey page, CriteriaKey key, Map<String, FilterMeta> filters, Map<String, SortMeta> sortMeta) {
+        Locale locale = model.getLocale();
+        var task = new FutureTask<>(() -> model.withLocale(locale,
+                () -> model.findPage(page.first(), page.pageSize(), filters, sortMeta)));
+        synchronized (pages) {
+            if (!key.equals(criteria) || pages.containsKey(page)) {
+                return;
+            }
+            pages.put(page, task);
+            for (Iterator<Future<List<TT>>> it = pages.values().iterator(); pages.size() > MAX_PAGES;) {
+                it.next().cancel(true);
+                it.remove();
+            }
+        }
+        try {
+            model.getPrefetchExecutor().execute(task);
+        } catch (RejectedExecutionException e) {
+            log.info("Prefetch of {} rejected by the executor: {}", model.getEntityClass().getName(), e.toString());
+            synchronized (pages) {
+                pages.remove(page, task);
+            }
+        }
+    }
+
+    private void cancelAll() {
+        pages.values().forEach(future -> future.cancel(true));
+        pages.clear();
+    }
+
+    /**
+     * @return prefetched rows, or {@code null} if prefetch didn't succeed
+     */
+    private List<TT> await(Future<List<TT>> prefetched) {
+        try {
+            return prefetched.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("Prefetch of {} failed, loading synchronously", model.getEntityClass().getName(), e.getCause());
+        } catch (CancellationException e) {
+            log.debug("prefetch cancelled, loading synchronously", e);
+        }
+        return null;
+    }
+
+    /**
+     * PrimeFaces reuses and modifies filter and sort criteria between requests,
+     * so background queries get their own copies, with values already converted
+     */
+    private Map<String, FilterMeta> copyFilters(Map<String, FilterMeta> filters) {
+        Class<TT> entityClass = model.getEntityClass();
+        Root<TT> root = model.getEntityManager().get().getCriteriaBuilder().createQuery(entityClass).from(entityClass);
+        return filters.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey,
+                entry -> FilterMeta.builder().field(entry.getValue().getField())
+                        .filterValue(convert(root, entry.getValue()))
+                        .matchMode(entry.getValue().getMatchMode()).build()));
+    }
+
+    /**
+     * Converts filter value to the field's type, the same way {@link JPAModelImpl} does when filtering
+     */
+    private Object convert(Root<TT> root, FilterMeta filter) {
+        Object value = filter.getFilterValue();
+        if (value == null || filter.isGlobalFilter()) {
+            return value;
+        }
+        try {
+            Class<?> fieldType = model.resolveField(root, filter.getField()).getJavaType();
+            if (fieldType == String.class || fieldType.equals(value.getClass())) {
+                return value;
+            } else if (value instanceof Collection<?> || value.getClass().isArray()) {
+                Collection<?> values = value instanceof Collection<?> collection ? collection
+                        : Arrays.asList((Object[]) value);
+                return values.stream().map(raw -> fieldType.isAssignableFrom(raw.getClass()) ? raw
+                        : Objects.requireNonNullElse(model.convert(raw, fieldType), raw)).toList();
+            }
+            return Objects.requireNonNullElse(model.convert(value, fieldType), value);
+        } catch (IllegalArgumentException e) {
+            // not an entity field, the model ignores it as well
+            return value;
+        }
+    }
+
+    private static Map<String, SortMeta> copySort(Map<String, SortMeta> sortMeta) {
+        return sortMeta.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey,
+                entry -> SortMeta.builder().field(entry.getValue().getField())
+                        .order(entry.getValue().getOrder())
+                        .priority(entry.getValue().getPriority()).build()));
+    }
+}
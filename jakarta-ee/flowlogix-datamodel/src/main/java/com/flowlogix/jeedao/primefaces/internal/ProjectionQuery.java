@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces.internal;
+
+import com.flowlogix.api.dao.JPAFinder.QueryCriteria;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import org.omnifaces.util.Lazy;
+import org.primefaces.model.FilterMeta;
+import org.primefaces.model.SortMeta;
+
+/**
+ * Projection mode of {@link JPAModelImpl}, selects only the primary key and projected attributes
+ * into a tuple, instead of whole entities. Each tuple is copied into a new, unmanaged entity instance,
+ * so relationships (including eager ones) are not loaded, and the persistence context
+ * doesn't keep track of the rows. Filters, sort and row keys work the same as with full entities.
+ *
+ * @param <TT> entity type
+ */
+@RequiredArgsConstructor
+final class ProjectionQuery<TT> {
+    private final JPAModelImpl<TT> model;
+    private final Lazy<Plan<TT>> plan = new Lazy<>(this::createPlan);
+
+    /**
+     * Attributes to select and entity fields to copy them into, primary key first
+     */
+    private record Plan<TT>(Constructor<TT> constructor, List<String> attributes, List<Field> fields) { }
+
+    @SuppressWarnings("unchecked")
+    List<TT> findRows(int first, int pageSize, Map<String, FilterMeta> filters, Map<String, SortMeta> sortMeta) {
+        EntityManager em = model.getEntityManager().get();
+        var cb = em.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<TT> root = query.from(model.getEntityClass());
+        // filters and sort don't depend on the selection, so the entity criteria hooks apply as-is
+        model.addToCriteria(new QueryCriteria<>(cb, root, (CriteriaQuery<TT>) (CriteriaQuery<?>) query), filters, sortMeta);
+        query.multiselect(plan.get().attributes().stream().map(root::get).toArray(Selection<?>[]::new));
+        var typedQuery = model.withTimeout(em.createQuery(query)).setFirstResult(Integer.max(first, 0))
+                .setMaxResults(Integer.max(first + pageSize, 1) - Integer.max(first, 0));
+        var optimized = (TypedQuery<Tuple>) (TypedQuery<?>) model.getOptimizer()
+                .apply((TypedQuery<TT>) (TypedQuery<?>) typedQuery);
+        return optimized.getResultList().stream().map(this::toEntity).toList();
+    }
+
+    @SneakyThrows(ReflectiveOperationException.class)
+    private TT toEntity(Tuple tuple) {
+        var current = plan.get();
+        TT entity = current.constructor().newInstance();
+        for (int ii = 0; ii < current.fields().size(); ++ii) {
+            current.fields().get(ii).set(entity, tuple.get(ii));
+        }
+        return entity;
+    }
+
+    @SneakyThrows(NoSuchMethodException.class)
+    private Plan<TT> createPlan() {
+        Set<String> attributes = new LinkedHashSet<>();
+        var entityType = model.getEntityManager().get().getMetamodel().entity(model.getEntityClass());
+        if (entityType.hasSingleIdAttribute()) {
+            attributes.add(entityType.getId(entityType.getIdType().getJavaType()).getName());
+        }
+        attributes.addAll(model.getProjection());
+        var fields = new ArrayList<Field>();
+        for (String attribute : attributes) {
+            Field field = findField(model.getEntityClass(), attribute);
+            if (field == null || !field.trySetAccessible()) {
+                throw new IllegalArgumentException(String.format("Projected attribute %s not found in %s",
+                        attribute, model.getEntityClass().getName()));
+            }
+            fields.add(field);
+        }
+        Constructor<TT> constructor = model.getEntityClass().getDeclaredConstructor();
+        constructor.trySetAccessible();
+        return new Plan<>(constructor, List.copyOf(attributes), List.copyOf(fields));
+    }
+
+    private static Field findField(Class<?> cls, String name) {
+        for (Class<?> current = cls; current != null && current != Object.class; current = current.getSuperclass()) {
+            try {
+                return current.getDeclaredField(name);
+            } catch (NoSuchFieldException e) {
+                // try the superclass
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces.internal;
+
+import com.flowlogix.jeedao.PreparedQueries;
+import com.flowlogix.jeedao.primefaces.JPALazyDataModel;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.primefaces.model.FilterMeta;
+import org.primefaces.model.SortMeta;
+
+/**
+ * Caches translated queries of {@link JPAModelImpl} per filter and sort <em>shape</em>,
+ * i.e. which fields are filtered with which match modes, and how rows are sorted.
+ * Filter values are bound as query parameters instead of literals, and each shape
+ * is registered as a named query with the {@link EntityManagerFactory} via {@link PreparedQueries}, so JPQL and SQL
+ * are generated once per shape. Subsequent requests create the query by name and only bind the values.
+ * <p>
+ * Criteria objects are still built for each request, since that's what determines the shape
+ * and the parameter values. Only used when there are no custom {@link com.flowlogix.jeedao.primefaces.Filter}
+ * or {@link com.flowlogix.jeedao.primefaces.Sorter} hooks, since those may depend on
+ * filter values or state that isn't part of the shape, and without
+ * {@link com.flowlogix.jeedao.primefaces.SearchIndex}, since whether filters are narrowed down
+ * depends on the index state and the filter values.
+ *
+ * @param <TT> entity type
+ */
+@RequiredArgsConstructor
+final class QueryShapeCache<TT> {
+    private static final String PREFIX = "flowlogix:JPALazyDataModel:";
+    private final JPAModelImpl<TT> model;
+
+    boolean isEnabled() {
+        return model.isQueryShapeCache() && model.getFilter() == JPAModelImpl.noFilter()
+                && model.getSorter() == JPAModelImpl.noSorter() && model.getGlobalSearch() == null
+                && model.getSearchIndex() == null;
+    }
+
+    List<TT> findRows(int first, int pageSize, Map<String, FilterMeta> filters, Map<String, SortMeta> sortMeta) {
+        EntityManager em = model.getEntityManager().get();
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<TT> cq = cb.createQuery(model.getEntityClass());
+        Root<TT> root = cq.from(model.getEntityClass());
+        var parameters = new Parameters();
+        cq.select(root).where(model.getFilters(filters, cb, root, parameters));
+        cq.orderBy(model.getSort(sortMeta, cb, root));
+        root.alias(JPALazyDataModel.RESULT);
+        TypedQuery<TT> query = createQuery(em, cq, parameters, model.getEntityClass(),
+                "rows:" + CriteriaKey.of(Map.of(), sortMeta).sort());
+        query.setFirstResult(Integer.max(first, 0));
+        query.setMaxResults(Integer.max(first + pageSize, 1) - Integer.max(first, 0));
+        return model.optimize(query).getResultList();
+    }
+
+    long count(Map<String, FilterMeta> filters) {
+        EntityManager em = model.getEntityManager().get();
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Long> cq = cb.createQuery(Long.class);
+        Root<TT> root = cq.from(model.getEntityClass());
+        var parameters = new Parameters();
+        cq.select(cb.count(root)).where(model.getFilters(filters, cb, root, parameters));
+        return model.withTimeout(createQuery(em, cq, parameters, Long.class, "count")).getSingleResult();
+    }
+
+    private <RR> TypedQuery<RR> createQuery(EntityManager em, CriteriaQuery<RR> cq, Parameters parameters,
+                                            Class<RR> resultType, String kind) {
+        String name = String.format("%s%s:%s:%s%s%s%s:%s", PREFIX, model.getEntityClass().getName(), kind,
+                model.isCaseSensitiveFilter() ? "" : model.getFilterCaseConversion(),
+                model.isWildcardSupport() ? "*" : "", parameters.shape, searchShape(parameters),
+                parameters.values.size());
+        TypedQuery<RR> query = parameters.cacheable
+                ? PreparedQueries.create(em, name, resultType, QueryShapeCache.class, () -> em.createQuery(cq))
+                : em.createQuery(cq);
+        parameters.values.forEach(query::setParameter);
+        return query;
+    }
+
+    /**
+     * Global filter searches the model's own attributes, which aren't part of its parameter shape.
+     * Models with custom {@link com.flowlogix.jeedao.primefaces.GlobalSearch} don't use the shape cache
+     *
+     * @return sorted search attributes, or empty string if there is no global filter
+     */
+    private String searchShape(Parameters parameters) {
+        String globalFilter = FilterMeta.GLOBAL_FILTER_KEY + " ";
+        if (parameters.shape.stream().noneMatch(shape -> shape.startsWith(globalFilter))) {
+            return "";
+        }
+        return model.getSearchAttributes().stream().sorted().toList().toString();
+    }
+
+    /**
+     * Binds filter values as query parameters, while recording the shape of the predicates
+     */
+    private static final class Parameters extends FilterValues {
+        private final List<String> shape = new ArrayList<>();
+        private final Map<String, Object> values = new LinkedHashMap<>();
+        private boolean cacheable = true;
+
+        @Override
+        Predicate like(CriteriaBuilder cb, FilterMeta filter, Expression<String> field, String pattern) {
+            return cb.like(field, bind(cb, filter, "like", String.class, pattern));
+        }
+
+        @Override
+        Predicate notLike(CriteriaBuilder cb, FilterMeta filter, Expression<String> field, String pattern) {
+            return cb.notLike(field, bind(cb, filter, "notLike", String.class, pattern));
+        }
+
+        @Override
+        Predicate equal(CriteriaBuilder cb, FilterMeta filter, Expression<?> field, Object value) {
+            return value == null ? literal(super.equal(cb, filter, field, value))
+                    : cb.equal(field, bind(cb, filter, "=", value.getClass(), value));
+        }
+
+        @Override
+        Predicate notEqual(CriteriaBuilder cb, FilterMeta filter, Expression<?> field, Object value) {
+            return value == null ? literal(super.notEqual(cb, filter, field, value))
+                    : cb.notEqual(field, bind(cb, filter, "<>", value.getClass(), value));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Predicate in(CriteriaBuilder cb, FilterMeta filter, Expression<?> field, Collection<?> values) {
+            return field.in((Expression<Collection<?>>) (Expression<?>) bind(cb, filter, "in", Collection.class, values));
+        }
+
+        @Override
+        <TC extends Comparable<? super TC>> Predicate lessThan(CriteriaBuilder cb, FilterMeta filter,
+                                                               Expression<TC> field, TC value) {
+            return value == null ? literal(super.lessThan(cb, filter, field, value))
+                    : cb.lessThan(field, bind(cb, filter, "<", value));
+        }
+
+        @Override
+        <TC extends Comparable<? super TC>> Predicate lessThanOrEqualTo(CriteriaBuilder cb, FilterMeta filter,
+                                                                        Expression<TC> field, TC value) {
+            return value == null ? literal(super.lessThanOrEqualTo(cb, filter, field, value))
+                    : cb.lessThanOrEqualTo(field, bind(cb, filter, "<=", value));
+        }
+
+        @Override
+        <TC extends Comparable<? super TC>> Predicate greaterThan(CriteriaBuilder cb, FilterMeta filter,
+                                                                  Expression<TC> field, TC value) {
+            return value == null ? literal(super.greaterThan(cb, filter, field, value))
+                    : cb.greaterThan(field, bind(cb, filter, ">", value));
+        }
+
+        @Override
+        <TC extends Comparable<? super TC>> Predicate greaterThanOrEqualTo(CriteriaBuilder cb, FilterMeta filter,
+                                                                           Expression<TC> field, TC value) {
+            return value == null ? literal(super.greaterThanOrEqualTo(cb, filter, field, value))
+                    : cb.greaterThanOrEqualTo(field, bind(cb, filter, ">=", value));
+        }
+
+        @SuppressWarnings("unchecked")
+        private <VV> Expression<VV> bind(CriteriaBuilder cb, FilterMeta filter, String operation, VV value) {
+            return bind(cb, filter, operation, (Class<VV>) value.getClass(), value);
+        }
+
+        @SuppressWarnings("unchecked")
+        private <VV> Expression<VV> bind(CriteriaBuilder cb, FilterMeta filter, String operation,
+                                         Class<?> type, Object value) {
+            String name = "p" + values.size();
+            shape.add(String.format("%s %s %s", filter.getField(), operation, type.getName()));
+            values.put(name, value);
+            return cb.parameter((Class<VV>) type, name);
+        }
+
+        /**
+         * Queries with {@code null} literals can't be shared
+         */
+        private Predicate literal(Predicate predicate) {
+            cacheable = false;
+            return predicate;
+        }
+    }
+}
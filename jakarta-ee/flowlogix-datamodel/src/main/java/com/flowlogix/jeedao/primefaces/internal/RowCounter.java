@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces.internal;
+
+import com.flowlogix.jeedao.primefaces.JPALazyDataModel.CountStrategy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import java.util.Map;
+import java.util.OptionalLong;
+import lombok.RequiredArgsConstructor;
+import org.primefaces.model.FilterMeta;
+
+/**
+ * Counts rows of {@link JPAModelImpl} according to its {@link CountStrategy}
+ *
+ * @param <TT> entity type
+ */
+@RequiredArgsConstructor
+final class RowCounter<TT> {
+    private final JPAModelImpl<TT> model;
+
+    long count(Map<String, FilterMeta> filters) {
+        return switch (model.getCountStrategy()) {
+            case EXACT -> model.exactCount(filters);
+            case CAPPED -> cappedCount(filters);
+            case ESTIMATED -> estimate(filters).orElseGet(() -> model.exactCount(filters));
+        };
+    }
+
+    /**
+     * Fetches at most {@code countCap + 1} primary keys, instead of scanning all matching rows
+     */
+    private long cappedCount(Map<String, FilterMeta> filters) {
+        EntityManager em = model.getEntityManager().get();
+        var cb = em.getCriteriaBuilder();
+        CriteriaQuery<Object> query = cb.createQuery(Object.class);
+        Root<TT> root = query.from(model.getEntityClass());
+        query.select(primaryKey(em, root)).where(model.getFilters(filters, cb, root));
+        return model.withTimeout(em.createQuery(query)).setMaxResults(Integer.max(model.getCountCap(), 0) + 1)
+                .getResultList().size();
+    }
+
+    private OptionalLong estimate(Map<String, FilterMeta> filters) {
+        var estimator = model.getCountEstimator();
+        if (estimator == null || !CriteriaKey.ofFilters(filters).filters().isEmpty()) {
+            return OptionalLong.empty();
+        }
+        return estimator.estimate(model.getEntityManager().get(), model.getEntityClass());
+    }
+
+    private Selection<?> primaryKey(EntityManager em, Root<TT> root) {
+        try {
+            var entityType = em.getMetamodel().entity(model.getEntityClass());
+            if (entityType.hasSingleIdAttribute()) {
+                return root.get(entityType.getId(entityType.getIdType().getJavaType()));
+            }
+        } catch (IllegalArgumentException e) {
+            // fall through, select the entity itself
+        }
+        return root;
+    }
+}
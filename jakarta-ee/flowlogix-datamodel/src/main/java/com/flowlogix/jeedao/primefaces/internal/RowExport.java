@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces.internal;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import org.primefaces.model.FilterMeta;
+import org.primefaces.model.SortMeta;
+
+/**
+ * Streams all rows matching filter and sort criteria of {@link JPAModelImpl} in chunks,
+ * clearing the persistence context before loading each subsequent chunk,
+ * so memory use stays flat regardless of how many rows are exported.
+ * Chunks are loaded via {@link KeysetPagination}, which seeks past the previous chunk when possible,
+ * and is not affected by the model's paging state
+ *
+ * @param <TT> entity type
+ */
+final class RowExport<TT> {
+    private final JPAModelImpl<TT> model;
+    private final KeysetPagination<TT> chunks;
+    private final Map<String, FilterMeta> filters;
+    private final Map<String, SortMeta> sortMeta;
+    private int nextRow;
+
+    RowExport(JPAModelImpl<TT> model, Map<String, FilterMeta> filters, Map<String, SortMeta> sortMeta) {
+        this.model = model;
+        this.chunks = new KeysetPagination<>(model);
+        this.filters = filters;
+        this.sortMeta = sortMeta;
+    }
+
+    Stream<TT> stream() {
+        return Stream.generate(this::nextChunk).takeWhile(Predicate.not(List::isEmpty)).flatMap(List::stream);
+    }
+
+    private List<TT> nextChunk() {
+        if (nextRow < 0) {
+            return List.of();
+        } else if (nextRow > 0) {
+            // rows of the previous chunk have been consumed by now
+            model.getEntityManager().get().clear();
+        }
+        int chunkSize = model.getExportChunkSize();
+        List<TT> rows = chunks.findRows(nextRow, chunkSize, filters, sortMeta);
+        nextRow = rows.size() < chunkSize ? -1 : nextRow + rows.size();
+        return model.getResultEnricher().apply(rows);
+    }
+}
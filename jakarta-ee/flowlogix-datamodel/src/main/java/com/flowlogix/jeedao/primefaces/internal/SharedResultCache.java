@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces.internal;
+
+import com.flowlogix.jeedao.primefaces.ModelCacheInvalidator;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.metamodel.SingularAttribute;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import org.primefaces.model.FilterMeta;
+import org.primefaces.model.SortMeta;
+
+/**
+ * Application-wide cache of page results and counts, shared by all models
+ * of the same entity class and {@link JPAModelImpl#getSharedCacheRegion()}, so users opening
+ * the same views with the same filter and sort criteria don't run the same queries.
+ * Primary keys of the page rows are cached and rows are loaded by primary key, together with the filters,
+ * so users don't share entity instances, and rows that no longer match aren't shown.
+ * Pages aren't cached in projection mode, since projected rows are mutable instances, only counts are.
+ * <p>
+ * Least recently used entries are evicted when there are more than {@value #MAX_ENTRIES} entries,
+ * or more than {@value #MAX_ROWS} rows in total. Entries expire after {@link JPAModelImpl#getSharedCacheExpiry()},
+ * and entries of the entity class are discarded when entities are persisted, updated or removed,
+ * see {@link ModelCacheInvalidator}
+ *
+ * @param <TT> entity type
+ */
+@RequiredArgsConstructor
+final class SharedResultCache<TT> {
+    private static final int MAX_ENTRIES = 1_000;
+    private static final int MAX_ROWS = 100_000;
+    private static final Map<Key, Entry> ENTRIES = new LinkedHashMap<>(MAX_ENTRIES, 0.75F, true);
+    private static int cachedRows;
+    private final JPAModelImpl<TT> model;
+
+    /**
+     * @param first first row, or -1 for counts
+     */
+    private record Key(Class<?> entityClass, String region, CriteriaKey criteria, int first, int pageSize) { }
+    private record Entry(long generation, long expiresAt, List<?> rows, long count) { }
+
+    List<TT> findRows(int first, int pageSize, Map<String, FilterMeta> filters, Map<String, SortMeta> sortMeta,
+                      Supplier<List<TT>> loader) {
+        Optional<String> idAttribute = model.getProjection().isEmpty() ? idAttribute() : Optional.empty();
+        if (idAttribute.isEmpty()) {
+            return loader.get();
+        }
+        var key = new Key(model.getEntityClass(), model.getSharedCacheRegion(),
+                CriteriaKey.of(filters, sortMeta), first, pageSize);
+        long generation = EntityGenerations.current(model.getEntityClass());
+        var entry = get(key, generation);
+        if (entry != null) {
+            return findByIds(idAttribute.get(), entry.rows(), filters);
+        }
+        List<TT> rows = loader.get();
+        EntityManager em = model.getEntityManager().get();
+        var accessor = IdAccessor.of(model.getEntityClass(), em);
+        put(key, newEntry(generation, rows.stream().map(row -> accessor.read(row, em)).toList(), 0));
+        return rows;
+    }
+
+    long count(Map<String, FilterMeta> filters, LongSupplier counter) {
+        var key = new Key(model.getEntityClass(), model.getSharedCacheRegion(), CriteriaKey.ofFilters(filters), -1, 0);
+        long generation = EntityGenerations.current(model.getEntityClass());
+        var entry = get(key, generation);
+        if (entry != null) {
+            return entry.count();
+        }
+        long count = counter.getAsLong();
+        put(key, newEntry(generation, List.of(), count));
+        return count;
+    }
+
+    /**
+     * Loads rows by primary key, in the original order, skipping rows that no longer match the filters
+     */
+    private List<TT> findByIds(String idAttribute, List<?> ids, Map<String, FilterMeta> filters) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        EntityManager em = model.getEntityManager().get();
+        var accessor = IdAccessor.of(model.getEntityClass(), em);
+        Map<Object, TT> rows = model.optimize(model.getJpaFinder().findAll(qc -> qc.query()
+                        .where(qc.builder().and(qc.root().get(idAttribute).in(ids),
+                                model.getFilters(filters, qc.builder(), qc.root()))))).getResultList().stream()
+                .collect(Collectors.toMap(row -> accessor.read(row, em), Function.identity(), (a, b) -> a));
+        return ids.stream().map(rows::get).filter(Objects::nonNull).toList();
+    }
+
+    private Entry newEntry(long generation, List<?> rows, long count) {
+        return new Entry(generation, System.nanoTime() + model.getSharedCacheExpiry().toNanos(), rows, count);
+    }
+
+    private Optional<String> idAttribute() {
+        try {
+            var entityType = model.getEntityManager().get().getMetamodel().entity(model.getEntityClass());
+            if (!entityType.hasSingleIdAttribute()) {
+                return Optional.empty();
+            }
+            return entityType.getSingularAttributes().stream().filter(SingularAttribute::isId)
+                    .findFirst().map(SingularAttribute::getName);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Entry get(Key key, long generation) {
+        synchronized (ENTRIES) {
+            var entry = ENTRIES.get(key);
+            if (entry != null && (entry.generation() != generation || System.nanoTime() - entry.expiresAt() >= 0)) {
+                remove(key);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    private static void put(Key key, Entry entry) {
+        synchronized (ENTRIES) {
+            remove(key);
+            ENTRIES.put(key, entry);
+            cachedRows += entry.rows().size();
+            var eldest = ENTRIES.values().iterator();
+            while (eldest.hasNext() && (ENTRIES.size() > MAX_ENTRIES || cachedRows > MAX_ROWS)) {
+                cachedRows -= eldest.next().rows().size();
+                eldest.remove();
+            }
+        }
+    }
+
+    private static void remove(Key key) {
+        var removed = ENTRIES.remove(key);
+        if (removed != null) {
+            cachedRows -= removed.rows().size();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao.primefaces.internal;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Rows of the loaded page that are not written when the model is serialized,
+ * see {@link JPAModelImpl#isCompactSerialization()}.
+ * Internal class, do not use
+ *
+ * @param <TT> entity type
+ */
+@RequiredArgsConstructor
+public final class TransientRows<TT> extends AbstractList<TT> implements RandomAccess, Serializable {
+    private static final long serialVersionUID = 1L;
+    private final transient List<TT> rows;
+
+    @Override
+    public TT get(int index) {
+        return rows.get(index);
+    }
+
+    @Override
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * Rows are reloaded when they are needed after deserialization
+     *
+     * @return null
+     */
+    @Serial
+    private Object writeReplace() {
+        return null;
+    }
+}
@@ -17,5 +17,8 @@ module com.flowlogix.datamodel {
     requires jakarta.transaction;
     requires jakarta.el;
     requires java.desktop;
+    requires java.naming;
     requires org.primefaces;
+
+    provides com.flowlogix.api.dao.BulkUpdateListener with com.flowlogix.jeedao.primefaces.ModelCacheInvalidator;
 }
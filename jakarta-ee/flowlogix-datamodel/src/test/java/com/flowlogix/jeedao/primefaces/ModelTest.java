@@ -18,41 +18,74 @@ package com.flowlogix.jeedao.primefaces;
 import static com.flowlogix.jeedao.primefaces.JPALazyDataModel.RESULT;
 import static com.flowlogix.util.SerializeTester.serializeAndDeserialize;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatExceptionOfType;
+import com.flowlogix.api.dao.QueryMetrics.Measurement;
+import com.flowlogix.jeedao.DaoHelper;
 import com.flowlogix.jeedao.primefaces.Filter.FilterData;
+import com.flowlogix.jeedao.primefaces.JPALazyDataModel.CountStrategy;
 import com.flowlogix.jeedao.primefaces.Sorter.SortData;
+import com.flowlogix.jeedao.primefaces.internal.CriteriaKey;
 import com.flowlogix.jeedao.primefaces.internal.JPAModelImpl;
 import com.flowlogix.jeedao.primefaces.internal.InternalQualifierJPALazyModel;
 import jakarta.faces.component.UIComponent;
 import jakarta.faces.convert.Converter;
+import jakarta.persistence.Id;
+import jakarta.persistence.Query;
+import jakarta.persistence.Tuple;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
 import jakarta.persistence.criteria.Order;
 import jakarta.persistence.criteria.Path;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import javax.naming.InitialContext;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.UnaryOperator;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaDelete;
+import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.SingularAttribute;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Answers;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Answers.RETURNS_DEEP_STUBS;
 import static org.mockito.ArgumentMatchers.any;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -65,8 +98,10 @@ import org.mockito.quality.Strictness;
 import org.omnifaces.util.Beans;
 import org.omnifaces.util.Faces;
 import org.primefaces.model.FilterMeta;
+import org.primefaces.model.LazyDataModelIterator;
 import org.primefaces.model.MatchMode;
 import org.primefaces.model.SortMeta;
+import org.primefaces.model.SortOrder;
 
 /**
  *
@@ -228,6 +263,102 @@ class ModelTest implements Serializable {
         verifyNoMoreInteractions(rootObject);
     }
 
+    @Test
+    void globalSearch() {
+        var impl = JPAModelImpl.builder()
+                .entityManager(() -> em)
+                .entityClass(Object.class)
+                .searchAttributes(List.of("name", "email"))
+                .build();
+        impl.getFilters(Map.of(GLOBAL_FILTER_KEY, FilterMeta.of(" hello ", null)), cb, rootObject);
+        verify(rootObject).get("name");
+        verify(rootObject).get("email");
+        verify(cb, times(2)).like(any(), eq("%hello%"));
+        verify(cb).or(any(Predicate[].class));
+        impl.getFilters(Map.of(GLOBAL_FILTER_KEY, FilterMeta.of(" ", null)), cb, rootObject);
+        verify(cb).or(any(Predicate[].class));
+    }
+
+    @Test
+    void customGlobalSearch() {
+        var searched = new AtomicBoolean();
+        var impl = JPAModelImpl.builder()
+                .entityManager(() -> em)
+                .entityClass(Object.class)
+                .searchAttributes(List.of("name", "email"))
+                .globalSearch((builder, root, fields, value) -> {
+                    assertThat(fields).hasSize(2);
+                    assertThat(value).isEqualTo("hello");
+                    searched.set(true);
+                    return builder.conjunction();
+                })
+                .build();
+        impl.getFilters(Map.of(GLOBAL_FILTER_KEY, FilterMeta.of("hello", null)), cb, rootObject);
+        assertTrue(searched.get());
+        verify(cb, never()).like(any(), any(String.class));
+    }
+
+    @Test
+    void searchIndex(@TempDir java.nio.file.Path directory) {
+        var index = SearchIndex.create(IndexedEntity.class, directory, "name");
+        var updater = new SearchIndexUpdater();
+        updater.entityChanged(new IndexedEntity(1L, "Hello World"));
+        updater.entityChanged(new IndexedEntity(2L, "Goodbye"));
+        assertThat(index.find("name", "WORLD")).contains(Set.of(1L));
+        assertThat(index.find("name", "xyz")).contains(Set.of());
+        assertThat(index.find("name", "he")).isEmpty();
+        index.save();
+        var reloaded = SearchIndex.create(IndexedEntity.class, directory, "name");
+        assertThat(reloaded.find("name", "good")).contains(Set.of(2L));
+        updater.entityRemoved(new IndexedEntity(2L, "Goodbye"));
+        assertThat(reloaded.find("name", "good")).contains(Set.of());
+
+        var impl = JPAModelImpl.builder()
+                .entityManager(() -> em)
+                .entityClass(Object.class)
+                .searchIndex(reloaded)
+                .build();
+        when(rootObject.get("name").getJavaType()).thenAnswer(a -> String.class);
+        var worldFilter = Map.of("name", FilterMeta.builder().field("name").matchMode(MatchMode.CONTAINS)
+                .filterValue("world").build());
+        // loaded index may be missing rows
+        impl.getFilters(worldFilter, cb, rootObject);
+        verify(rootObject.get("id"), never()).in(any(Collection.class));
+        reloaded.markCurrent();
+        impl.getFilters(worldFilter, cb, rootObject);
+        verify(rootObject.get("id")).in(Set.of(1L));
+        impl.getFilters(Map.of("name", FilterMeta.builder().field("name").matchMode(MatchMode.CONTAINS)
+                .filterValue("nothing").build()), cb, rootObject);
+        // current index contains every row
+        verify(cb).disjunction();
+        updater.entityChanged(new IndexedEntity(3L, "World Peace"));
+        var limited = JPAModelImpl.builder()
+                .entityManager(() -> em)
+                .entityClass(Object.class)
+                .searchIndex(reloaded)
+                .searchIndexMaxIds(1)
+                .build();
+        // too many matches for the IN list
+        limited.getFilters(worldFilter, cb, rootObject);
+        impl.getFilters(worldFilter, cb, rootObject);
+        verify(rootObject.get("id")).in(Set.of(1L, 3L));
+        verify(rootObject.get("id"), times(2)).in(any(Collection.class));
+        ModelCacheInvalidator.invalidate(IndexedEntity.class);
+        assertThat(reloaded.isCurrent()).isFalse();
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> SearchIndex.create(IndexedEntity.class, directory, "related.name"));
+    }
+
+    @Test
+    void searchIndexFileFilter(@TempDir java.nio.file.Path directory) throws IOException {
+        try (var output = new ObjectOutputStream(Files.newOutputStream(
+                directory.resolve(IndexedEntity.class.getName() + ".ngram")))) {
+            output.writeObject(new HashMap<>(Map.of("name", new HashMap<>(Map.of(new Date(1), "text")))));
+        }
+        assertThat(SearchIndex.create(IndexedEntity.class, directory, "name").find("name", "text"))
+                .contains(Set.of());
+    }
+
     private static void filter(FilterData filterData, CriteriaBuilder cb, Root<Object> root) {
         assertThat(filterData.replaceFilter("aaa",
                 (Predicate predicate, String value) -> cb.greaterThan(root.get("column2"), value))).isTrue();
@@ -373,9 +504,21 @@ class ModelTest implements Serializable {
         verify(converter).getAsObject(any(), any(), eq("xxx"));
     }
 
+    static class IndexedEntity {
+        @Id
+        private final Long id;
+        private final String name;
+
+        IndexedEntity(Long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
     @SuppressWarnings("checkstyle:RedundantModifier")
     public static class MyEntity {
         final Long id;
+        String name;
         public MyEntity() {
             this.id = 1L;
         }
@@ -390,6 +533,7 @@ class ModelTest implements Serializable {
                 .entityManager(() -> em)
                 .entityClass(MyEntity.class)
                 .build();
+        when(em.getMetamodel().entity(MyEntity.class).getIdType().getJavaType()).thenAnswer(a -> Long.class);
         when(em.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(any(MyEntity.class)))
                 .thenAnswer(entry -> entry.<MyEntity>getArgument(0).id);
         assertThat(impl.getStringToKeyConverter().apply("5")).isEqualTo(5L);
@@ -397,21 +541,648 @@ class ModelTest implements Serializable {
     }
 
     @Test
-    void serialization() throws IOException, ClassNotFoundException {
+    @SuppressWarnings("unchecked")
+    void metamodelConverters() throws NoSuchFieldException {
+        var impl = JPAModelImpl.<MyEntity>builder()
+                .entityManager(() -> em)
+                .entityClass(MyEntity.class)
+                .build();
+        EntityType<MyEntity> entityType = mock(EntityType.class, RETURNS_DEEP_STUBS);
+        SingularAttribute<MyEntity, Long> idAttribute = mock(SingularAttribute.class);
+        when(em.getMetamodel().entity(MyEntity.class)).thenReturn(entityType);
+        when(entityType.getIdType().getJavaType()).thenAnswer(a -> Long.class);
+        when(entityType.hasSingleIdAttribute()).thenReturn(true);
+        when(entityType.getSingularAttributes()).thenAnswer(a -> Set.of(idAttribute));
+        when(idAttribute.isId()).thenReturn(true);
+        when(idAttribute.getJavaMember()).thenReturn(MyEntity.class.getDeclaredField("id"));
+        assertThat(impl.getStringToKeyConverter().apply("5")).isEqualTo(5L);
+        assertThat(impl.getKeyConverter().apply(new MyEntity(10L))).isEqualTo("10");
+        verify(em.getEntityManagerFactory().getPersistenceUnitUtil(), never()).getIdentifier(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void keysetPagination() throws NoSuchFieldException {
+        var impl = JPAModelImpl.<MyEntity>builder()
+                .entityManager(() -> em)
+                .entityClass(MyEntity.class)
+                .keysetPagination(true)
+                .build();
+        EntityType<MyEntity> entityType = mock(EntityType.class);
+        SingularAttribute<MyEntity, Long> idAttribute = mock(SingularAttribute.class);
+        when(em.getMetamodel().entity(MyEntity.class)).thenReturn(entityType);
+        when(entityType.hasSingleIdAttribute()).thenReturn(true);
+        when(entityType.getSingularAttributes()).thenAnswer(a -> Set.of(idAttribute));
+        when(idAttribute.isId()).thenReturn(true);
+        when(idAttribute.getName()).thenReturn("id");
+        when(idAttribute.getJavaMember()).thenReturn(MyEntity.class.getDeclaredField("id"));
+        TypedQuery<MyEntity> query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of(new MyEntity(1), new MyEntity(2)));
+
+        impl.findRows(0, 2, Map.of(), Map.of());
+        impl.findRows(2, 2, Map.of(), Map.of());
+        impl.findRows(10, 2, Map.of(), Map.of());
+        verify(query).setFirstResult(0);
+        verify(query, never()).setFirstResult(2);
+        verify(query).setFirstResult(10);
+        verify(em.getCriteriaBuilder()).greaterThan(any(), eq(2L));
+
+        // nullable sort column
+        SingularAttribute<MyEntity, String> nameAttribute = mock(SingularAttribute.class);
+        when(nameAttribute.isOptional()).thenReturn(true);
+        ManagedType<MyEntity> managedType = em.getMetamodel().managedType(MyEntity.class);
+        doReturn(nameAttribute).when(managedType).getAttribute("name");
+        var byName = Map.of("name", SortMeta.builder().field("name").order(SortOrder.ASCENDING).build());
+        impl.findRows(0, 2, Map.of(), byName);
+        impl.findRows(2, 2, Map.of(), byName);
+        verify(query).setFirstResult(2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void cachedCount() {
+        var impl = JPAModelImpl.<MyEntity>builder()
+                .entityManager(() -> em)
+                .entityClass(MyEntity.class)
+                .countCacheExpiry(Duration.ofMinutes(1))
+                .build();
+        when(em.getCriteriaBuilder().createQuery(Long.class).from(MyEntity.class)
+                .get(any(String.class)).getJavaType()).thenAnswer(a -> String.class);
+        TypedQuery<Long> query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        when(query.getSingleResult()).thenReturn(5L);
+        var filters = Map.of("aaa", FilterMeta.builder().field("aaa").filterValue("xxx").build());
+        assertThat(impl.count(filters)).isEqualTo(5);
+        assertThat(impl.count(Map.of("bbb", FilterMeta.builder().field("aaa").filterValue("xxx").build())))
+                .isEqualTo(5);
+        verify(query).getSingleResult();
+        impl.count(Map.of());
+        ModelCacheInvalidator.invalidate(MyEntity.class);
+        impl.count(filters);
+        verify(query, times(3)).getSingleResult();
+        impl.count(Map.of(GLOBAL_FILTER_KEY, FilterMeta.of("hello", null)));
+        impl.count(Map.of(GLOBAL_FILTER_KEY, FilterMeta.of("bye", null)));
+        verify(query, times(5)).getSingleResult();
+        impl.count(filters);
+        verify(query, times(5)).getSingleResult();
+        // updates can move rows in or out of the filter
+        new ModelCacheInvalidator().entityChanged(new MyEntity(1));
+        impl.count(filters);
+        verify(query, times(6)).getSingleResult();
+        // bulk statements notify ModelCacheInvalidator via BulkUpdateListener service
+        when(em.createQuery(any(CriteriaDelete.class))).thenReturn(mock(Query.class));
+        new DaoHelper<>(() -> em, MyEntity.class).deleteWhere(criteria -> { });
+        impl.count(filters);
+        verify(query, times(7)).getSingleResult();
+        // within a JTA transaction, only after it commits
+        var registry = mock(TransactionSynchronizationRegistry.class);
+        when(registry.getTransactionStatus()).thenReturn(Status.STATUS_ACTIVE);
+        try (var mockedStatic = mockStatic(InitialContext.class)) {
+            mockedStatic.when(() -> InitialContext.doLookup("java:comp/TransactionSynchronizationRegistry"))
+                    .thenReturn(registry);
+            new DaoHelper<>(() -> em, MyEntity.class).deleteWhere(criteria -> { });
+            new DaoHelper<>(() -> em, MyEntity.class).deleteWhere(criteria -> { });
+        }
+        var synchronizations = ArgumentCaptor.forClass(Synchronization.class);
+        verify(registry, times(2)).registerInterposedSynchronization(synchronizations.capture());
+        impl.count(filters);
+        verify(query, times(7)).getSingleResult();
+        synchronizations.getAllValues().get(0).afterCompletion(Status.STATUS_ROLLEDBACK);
+        impl.count(filters);
+        verify(query, times(7)).getSingleResult();
+        synchronizations.getAllValues().get(1).afterCompletion(Status.STATUS_COMMITTED);
+        impl.count(filters);
+        verify(query, times(8)).getSingleResult();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void cappedCount() {
         JPALazyDataModel<MyEntity> model;
         try (var mockedStatic = mockStatic(Beans.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS))) {
             mockedStatic.when(() -> Beans.getReference(eq(JPALazyDataModel.class), eq(InternalQualifierJPALazyModel.LITERAL)))
                     .thenReturn(new JPALazyDataModel<>());
             model = JPALazyDataModel.create(builder -> builder
                     .entityManager(() -> em).entityClass(MyEntity.class)
+                    .countStrategy(CountStrategy.CAPPED).countCap(2)
                     .build());
         }
+        TypedQuery<Object> query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        when(query.setMaxResults(3)).thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of(1L, 2L, 3L), List.of(1L));
+        model.setRowCount(model.count(Map.of()));
+        assertThat(model.getRowCountText()).isEqualTo("2+");
+        model.setRowCount(model.count(Map.of()));
+        assertThat(model.getRowCountText()).isEqualTo("1");
+        verify(query, never()).getSingleResult();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void metrics() {
+        var measurements = new ArrayList<Measurement>();
+        JPALazyDataModel<MyEntity> model;
+        try (var mockedStatic = mockStatic(Beans.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS))) {
+            mockedStatic.when(() -> Beans.getReference(eq(JPALazyDataModel.class), eq(InternalQualifierJPALazyModel.LITERAL)))
+                    .thenReturn(new JPALazyDataModel<>());
+            model = JPALazyDataModel.create(builder -> builder
+                    .entityManager(() -> em).entityClass(MyEntity.class)
+                    .metrics(measurements::add).modelName("entities")
+                    .build());
+        }
+        TypedQuery<Long> query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        when(query.getSingleResult()).thenReturn(5L);
+        assertThat(model.count(Map.of())).isEqualTo(5);
+        assertThat(measurements).extracting(m -> m.operation().name(), m -> m.operation().entityClass(),
+                m -> m.operation().modelName(), Measurement::rows).containsExactly(
+                        tuple("count", MyEntity.class, null, 5L),
+                        tuple("count", MyEntity.class, "entities", 5L));
+        assertThat(measurements.get(1).operation().criteria()).isEqualTo(CriteriaKey.of(Map.of(), Map.of()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void estimatedCount() {
+        var impl = JPAModelImpl.<MyEntity>builder()
+                .entityManager(() -> em)
+                .entityClass(MyEntity.class)
+                .countStrategy(CountStrategy.ESTIMATED)
+                .countEstimator((entityManager, entityClass) -> OptionalLong.of(1_000_000))
+                .build();
+        when(em.getCriteriaBuilder().createQuery(Long.class).from(MyEntity.class)
+                .get(any(String.class)).getJavaType()).thenAnswer(a -> String.class);
+        TypedQuery<Long> query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        when(query.getSingleResult()).thenReturn(5L);
+        assertThat(impl.count(Map.of())).isEqualTo(1_000_000);
+        assertThat(impl.count(Map.of("aaa", FilterMeta.builder().field("aaa").filterValue("xxx").build())))
+                .isEqualTo(5);
+        verify(query).getSingleResult();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void projection() {
+        var impl = JPAModelImpl.<MyEntity>builder()
+                .entityManager(() -> em)
+                .entityClass(MyEntity.class)
+                .projection(List.of("name"))
+                .build();
+        var entityType = em.getMetamodel().entity(MyEntity.class);
+        when(entityType.hasSingleIdAttribute()).thenReturn(true);
+        when(entityType.getIdType().getJavaType()).thenAnswer(a -> Long.class);
+        when(entityType.getId(any()).getName()).thenReturn("id");
+        TypedQuery<Tuple> query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        when(query.setFirstResult(0)).thenReturn(query);
+        when(query.setMaxResults(10)).thenReturn(query);
+        Tuple tuple = mock(Tuple.class);
+        when(tuple.get(0)).thenReturn(5L);
+        when(tuple.get(1)).thenReturn("five");
+        when(query.getResultList()).thenReturn(List.of(tuple));
+
+        var rows = impl.findRows(0, 10, Map.of(), Map.of());
+        assertThat(rows).singleElement().satisfies(row -> {
+            assertThat(row.id).isEqualTo(5L);
+            assertThat(row.name).isEqualTo("five");
+        });
+        verify(em.getCriteriaBuilder().createTupleQuery()).multiselect(any(Selection[].class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rowDataWithProjection() {
+        JPALazyDataModel<MyEntity> model;
+        try (var mockedStatic = mockStatic(Beans.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS))) {
+            mockedStatic.when(() -> Beans.getReference(eq(JPALazyDataModel.class), eq(InternalQualifierJPALazyModel.LITERAL)))
+                    .thenReturn(new JPALazyDataModel<>());
+            model = JPALazyDataModel.create(builder -> builder
+                    .entityManager(() -> em).entityClass(MyEntity.class)
+                    .converter(Long::valueOf).keyConverter(entity -> entity.id.toString())
+                    .projection(List.of("name"))
+                    .build());
+        }
+        var entityType = em.getMetamodel().entity(MyEntity.class);
+        when(entityType.hasSingleIdAttribute()).thenReturn(true);
+        when(entityType.getIdType().getJavaType()).thenAnswer(a -> Long.class);
+        when(entityType.getId(any()).getName()).thenReturn("id");
+        TypedQuery<Tuple> query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        when(query.setFirstResult(0)).thenReturn(query);
+        when(query.setMaxResults(10)).thenReturn(query);
+        Tuple tuple = mock(Tuple.class);
+        when(tuple.get(0)).thenReturn(5L);
+        when(query.getResultList()).thenReturn(List.of(tuple));
+        var entity = new MyEntity(5);
+        when(em.find(MyEntity.class, 5L)).thenReturn(entity);
+
+        assertThat(model.load(0, 10, Map.of(), Map.of())).singleElement().isNotSameAs(entity);
+        // projected rows are partly populated, so the full entity is returned
+        assertThat(model.getRowData("5")).isSameAs(entity);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sharedResultCache() {
+        JPALazyDataModel.BuilderFunction<MyEntity> builder = b -> b
+                .entityManager(() -> em)
+                .entityClass(MyEntity.class)
+                .projection(List.of("name"))
+                .sharedCacheRegion("sharedResultCache")
+                .build();
+        var first = builder.apply(JPAModelImpl.<MyEntity>builder());
+        var second = builder.apply(JPAModelImpl.<MyEntity>builder());
+        var entityType = em.getMetamodel().entity(MyEntity.class);
+        when(entityType.hasSingleIdAttribute()).thenReturn(true);
+        when(entityType.getIdType().getJavaType()).thenAnswer(a -> Long.class);
+        when(entityType.getId(any()).getName()).thenReturn("id");
+        TypedQuery<Object> query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        when(query.setFirstResult(0)).thenReturn(query);
+        when(query.setMaxResults(10)).thenReturn(query);
+        Tuple tuple = mock(Tuple.class);
+        when(tuple.get(0)).thenReturn(5L);
+        when(query.getResultList()).thenReturn(List.of(tuple));
+        when(query.getSingleResult()).thenReturn(1L);
+
+        assertThat(first.count(Map.of())).isEqualTo(1);
+        assertThat(second.count(Map.of())).isEqualTo(1);
+        assertThat(first.findRows(0, 10, Map.of(), Map.of())).hasSize(1);
+        assertThat(second.findRows(0, 10, Map.of(), Map.of())).hasSize(1);
+        verify(query).getSingleResult();
+        // projected rows are not shared
+        verify(query, times(2)).getResultList();
+        ModelCacheInvalidator.invalidate(MyEntity.class);
+        second.count(Map.of());
+        verify(query, times(2)).getSingleResult();
+
+        var expired = JPAModelImpl.<MyEntity>builder()
+                .entityManager(() -> em)
+                .entityClass(MyEntity.class)
+                .sharedCacheRegion("expiredResultCache")
+                .sharedCacheExpiry(Duration.ZERO)
+                .build();
+        expired.count(Map.of());
+        expired.count(Map.of());
+        verify(query, times(4)).getSingleResult();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void joinReuse() {
+        var impl = JPAModelImpl.<MyEntity>builder()
+                .entityManager(() -> em)
+                .entityClass(MyEntity.class)
+                .build();
+        Root<MyEntity> root = mock(Root.class);
+        Join<MyEntity, Object> join = mock(Join.class, RETURNS_DEEP_STUBS);
+        doReturn(join).when(root).join("settings");
+        impl.resolveField(root, "settings.name");
+        doReturn(Set.of(join)).when(root).getJoins();
+        when(join.getJoinType()).thenReturn(JoinType.INNER);
+        when(join.getAttribute().getName()).thenReturn("settings");
+        impl.resolveField(root, "settings.value");
+        verify(root).join("settings");
+        verify(join).get("name");
+        verify(join).get("value");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void fetchGraph() {
+        var impl = JPAModelImpl.<MyEntity>builder()
+                .entityManager(() -> em)
+                .entityClass(MyEntity.class)
+                .fetchColumns(List.of("settings.name", "settings.owner.name", "name"))
+                .build();
+        TypedQuery<MyEntity> query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        when(query.setHint(eq("jakarta.persistence.loadgraph"), any())).thenReturn(query);
+        impl.findRows(0, 10, Map.of(), Map.of());
+        var graph = em.createEntityGraph(MyEntity.class);
+        verify(graph).addSubgraph("settings");
+        verify(graph.addSubgraph("settings")).addSubgraph("owner");
+        verify(query).getResultList();
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void pageWithCount() {
+        var impl = JPAModelImpl.<MyEntity>builder()
+                .entityManager(() -> em)
+                .entityClass(MyEntity.class)
+                .pageWithCount(true)
+                .build();
+        TypedQuery query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        var tuple = mock(Tuple.class);
+        when(tuple.get(0, MyEntity.class)).thenReturn(new MyEntity(1));
+        when(tuple.get(1, Long.class)).thenReturn(12L);
+        when(query.getResultList()).thenReturn(List.of(tuple));
+        when(query.getSingleResult()).thenReturn(5L);
+
+        assertThat(impl.count(Map.of())).isEqualTo(5);
+        assertThat(impl.findRows(0, 2, Map.of(), Map.of())).hasSize(1);
+        assertThat(impl.count(Map.of())).isEqualTo(12);
+        verify(query).getSingleResult();
+        ModelCacheInvalidator.invalidate(MyEntity.class);
+        assertThat(impl.count(Map.of())).isEqualTo(5);
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void pageWithCountLoad() {
+        JPALazyDataModel<MyEntity> combined;
+        JPALazyDataModel<MyEntity> projected;
+        try (var mockedStatic = mockStatic(Beans.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS))) {
+            mockedStatic.when(() -> Beans.getReference(eq(JPALazyDataModel.class), eq(InternalQualifierJPALazyModel.LITERAL)))
+                    .thenAnswer(invocation -> new JPALazyDataModel<>());
+            combined = JPALazyDataModel.create(builder -> builder
+                    .entityManager(() -> em).entityClass(MyEntity.class)
+                    .keyConverter(entity -> String.valueOf(entity.id))
+                    .pageWithCount(true)
+                    .build());
+            projected = JPALazyDataModel.create(builder -> builder
+                    .entityManager(() -> em).entityClass(MyEntity.class)
+                    .keyConverter(entity -> String.valueOf(entity.id))
+                    .pageWithCount(true)
+                    .projection(List.of("name"))
+                    .build());
+        }
+        var entityType = em.getMetamodel().entity(MyEntity.class);
+        when(entityType.hasSingleIdAttribute()).thenReturn(true);
+        when(entityType.getIdType().getJavaType()).thenAnswer(a -> Long.class);
+        when(entityType.getId(any()).getName()).thenReturn("id");
+        TypedQuery query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        when(query.setFirstResult(0)).thenReturn(query);
+        when(query.setMaxResults(10)).thenReturn(query);
+        var tuple = mock(Tuple.class);
+        when(tuple.get(0, MyEntity.class)).thenReturn(new MyEntity(1));
+        when(tuple.get(1, Long.class)).thenReturn(12L);
+        when(tuple.get(0)).thenReturn(1L);
+        when(query.getResultList()).thenReturn(List.of(tuple));
+
+        combined.load(0, 10, Map.of(), Map.of());
+        assertThat(combined.getRowCount()).isEqualTo(12);
+        // rows that don't come from the combined query don't cost a separate count query either
+        projected.load(0, 10, Map.of(), Map.of());
+        verify(query, never()).getSingleResult();
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void queryShapeCache() {
+        var impl = JPAModelImpl.<MyEntity>builder()
+                .entityManager(() -> em)
+                .entityClass(MyEntity.class)
+                .queryShapeCache(true)
+                .build();
+        when(em.getCriteriaBuilder().createQuery(MyEntity.class).from(MyEntity.class)
+                .get(any(String.class)).getJavaType()).thenAnswer(a -> String.class);
+        TypedQuery query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        when(em.createNamedQuery(any(String.class), eq(MyEntity.class))).thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of(new MyEntity()));
+
+        impl.findRows(0, 2, Map.of("aaa", FilterMeta.builder().field("aaa").filterValue("xxx").build()), Map.of());
+        impl.findRows(0, 2, Map.of("aaa", FilterMeta.builder().field("aaa").filterValue("yyy").build()), Map.of());
+        verify(em).createQuery(any(CriteriaQuery.class));
+        verify(em.getEntityManagerFactory()).addNamedQuery(any(String.class), eq(query));
+        verify(em, times(2)).createNamedQuery(any(String.class), eq(MyEntity.class));
+        verify(query).setParameter("p0", "%xxx%");
+        verify(query).setParameter("p0", "%yyy%");
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void queryShapeCacheGlobalFilter() {
+        var byName = JPAModelImpl.<MyEntity>builder()
+                .entityManager(() -> em)
+                .entityClass(MyEntity.class)
+                .queryShapeCache(true)
+                .searchAttributes(List.of("name"))
+                .build();
+        var byEmail = JPAModelImpl.<MyEntity>builder()
+                .entityManager(() -> em)
+                .entityClass(MyEntity.class)
+                .queryShapeCache(true)
+                .searchAttributes(List.of("email"))
+                .build();
+        TypedQuery query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        when(em.createNamedQuery(any(String.class), eq(MyEntity.class))).thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of(new MyEntity()));
+
+        var filters = Map.of(GLOBAL_FILTER_KEY, FilterMeta.of("xxx", null));
+        byName.findRows(0, 2, filters, Map.of());
+        byEmail.findRows(0, 2, filters, Map.of());
+        // models searching different attributes don't share the global filter query
+        var names = ArgumentCaptor.forClass(String.class);
+        verify(em.getEntityManagerFactory(), times(2)).addNamedQuery(names.capture(), eq(query));
+        assertThat(names.getAllValues()).doesNotHaveDuplicates();
+        verify(em, times(2)).createNamedQuery(any(String.class), eq(MyEntity.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rowDataFromPage() {
+        JPALazyDataModel<MyEntity> model;
+        try (var mockedStatic = mockStatic(Beans.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS))) {
+            mockedStatic.when(() -> Beans.getReference(eq(JPALazyDataModel.class), eq(InternalQualifierJPALazyModel.LITERAL)))
+                    .thenReturn(new JPALazyDataModel<>());
+            model = JPALazyDataModel.create(builder -> builder
+                    .entityManager(() -> em).entityClass(MyEntity.class)
+                    .converter(Long::valueOf).keyConverter(entity -> entity.id.toString())
+                    .build());
+        }
+        TypedQuery<MyEntity> query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        var second = new MyEntity(2);
+        when(query.getResultList()).thenReturn(List.of(new MyEntity(1), second));
+        model.load(0, 2, Map.of(), Map.of());
+        assertThat(model.getRowData("2")).isSameAs(second);
+        verify(em, never()).find(eq(MyEntity.class), any());
+        model.getRowData("3");
+        verify(em).find(MyEntity.class, 3L);
+        ModelCacheInvalidator.invalidate(MyEntity.class);
+        model.getRowData("2");
+        verify(em).find(MyEntity.class, 2L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void supersededLoad() {
+        var enriched = new AtomicInteger();
+        JPALazyDataModel<MyEntity> model;
+        try (var mockedStatic = mockStatic(Beans.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS))) {
+            mockedStatic.when(() -> Beans.getReference(eq(JPALazyDataModel.class), eq(InternalQualifierJPALazyModel.LITERAL)))
+                    .thenReturn(new JPALazyDataModel<>());
+            model = JPALazyDataModel.create(builder -> builder
+                    .entityManager(() -> em).entityClass(MyEntity.class)
+                    .converter(Long::valueOf).keyConverter(entity -> entity.id.toString())
+                    .resultEnricher(rows -> {
+                        enriched.incrementAndGet();
+                        return rows;
+                    })
+                    .supersedeLoads(true)
+                    .build());
+        }
+        TypedQuery<Object> query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        when(query.getSingleResult()).thenReturn(5L);
+        doReturn(List.of(new MyEntity(1))).when(query).getResultList();
+        // PrimeFaces wraps the loaded page
+        model.setWrappedData(model.load(0, 10, Map.of(), Map.of()));
+        var loads = new AtomicInteger();
+        when(query.getResultList()).thenAnswer(invocation -> {
+            // counts don't supersede loads
+            model.count(Map.of());
+            if (loads.incrementAndGet() == 1) {
+                // newer load comes in while the page query is running
+                model.load(10, 10, Map.of(), Map.of());
+            }
+            return List.of(new MyEntity(2));
+        });
+        // superseded load keeps showing the previous page, and skips the result enricher
+        assertThat(model.load(0, 10, Map.of(), Map.of())).extracting(entity -> entity.id).containsExactly(1L);
+        assertThat(enriched).hasValue(2);
+        assertThat(model.load(0, 10, Map.of(), Map.of())).extracting(entity -> entity.id).containsExactly(2L);
+        assertThat(enriched).hasValue(3);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void queryTimeout() {
+        var impl = JPAModelImpl.<MyEntity>builder()
+                .entityManager(() -> em)
+                .entityClass(MyEntity.class)
+                .queryTimeout(Duration.ofSeconds(2))
+                .build();
+        TypedQuery<Object> query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of());
+        when(query.getSingleResult()).thenReturn(5L);
+        impl.findRows(0, 10, Map.of(), Map.of());
+        assertThat(impl.count(Map.of())).isEqualTo(5);
+        verify(query, times(2)).setHint("jakarta.persistence.query.timeout", 2000L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void prefetchNextPage() {
+        var impl = JPAModelImpl.<MyEntity>builder()
+                .entityManager(() -> em)
+                .entityClass(MyEntity.class)
+                .prefetchExecutor(Runnable::run)
+                .build();
+        TypedQuery<MyEntity> query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of(new MyEntity(1), new MyEntity(2)));
+
+        impl.findRows(0, 2, Map.of(), Map.of());
+        verify(query).setFirstResult(2);
+        impl.findRows(2, 2, Map.of(), Map.of());
+        verify(query).setFirstResult(2);
+        verify(query).setFirstResult(4);
+        impl.findRows(4, 2, Map.of(), Map.of("aaa", SortMeta.builder().field("aaa").order(SortOrder.ASCENDING).build()));
+        verify(query, times(2)).setFirstResult(4);
+        verify(query, times(5)).getResultList();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void exportRowsInChunks() {
+        var impl = JPAModelImpl.<MyEntity>builder()
+                .entityManager(() -> em)
+                .entityClass(MyEntity.class)
+                .exportChunkSize(2)
+                .build();
+        TypedQuery<MyEntity> query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of(new MyEntity(1), new MyEntity(2)), List.of(new MyEntity(3)));
+
+        assertThat(impl.exportRows(Map.of(), Map.of()).map(entity -> entity.id).toList()).containsExactly(1L, 2L, 3L);
+        verify(query).setFirstResult(0);
+        verify(query).setFirstResult(2);
+        verify(query, times(2)).getResultList();
+        verify(em).clear();
+    }
+
+    @Test
+    void exportChunksOptIn() {
+        JPALazyDataModel<MyEntity> paged;
+        JPALazyDataModel<MyEntity> chunked;
+        try (var mockedStatic = mockStatic(Beans.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS))) {
+            mockedStatic.when(() -> Beans.getReference(eq(JPALazyDataModel.class), eq(InternalQualifierJPALazyModel.LITERAL)))
+                    .thenAnswer(invocation -> new JPALazyDataModel<>());
+            paged = JPALazyDataModel.create(builder -> builder
+                    .entityManager(() -> em).entityClass(MyEntity.class)
+                    .build());
+            chunked = JPALazyDataModel.create(builder -> builder
+                    .entityManager(() -> em).entityClass(MyEntity.class)
+                    .exportChunkSize(2)
+                    .build());
+        }
+        assertThat(paged.iterator(Map.of(), Map.of())).isInstanceOf(LazyDataModelIterator.class);
+        assertThat(chunked.iterator(Map.of(), Map.of())).isNotInstanceOf(LazyDataModelIterator.class);
+        var impl = JPAModelImpl.<MyEntity>builder()
+                .entityManager(() -> em)
+                .entityClass(MyEntity.class)
+                .build();
+        assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> impl.exportRows(Map.of(), Map.of()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void serialization() throws IOException, ClassNotFoundException {
+        JPALazyDataModel<MyEntity> model;
+        JPALazyDataModel<MyEntity> unloaded;
+        JPALazyDataModel.BuilderFunction<MyEntity> builderFunction = builder -> builder
+                .entityManager(() -> em).entityClass(MyEntity.class)
+                .build();
+        try (var mockedStatic = mockStatic(Beans.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS))) {
+            mockedStatic.when(() -> Beans.getReference(eq(JPALazyDataModel.class), eq(InternalQualifierJPALazyModel.LITERAL)))
+                    .thenAnswer(invocation -> new JPALazyDataModel<>());
+            model = JPALazyDataModel.create(builderFunction);
+            unloaded = JPALazyDataModel.create(builderFunction);
+        }
         lenient().when(em.getEntityManagerFactory().getPersistenceUnitUtil()
                 .getIdentifier(any(MyEntity.class))).thenReturn(5L);
+        TypedQuery<MyEntity> query = mock(TypedQuery.class, withSettings().serializable());
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        model.load(0, 10, Map.of(), Map.of());
+        // page state is only kept for compact serialization
+        assertThat(model.getSerializedSize()).isEqualTo(unloaded.getSerializedSize());
         var deserialized = serializeAndDeserialize(model);
         assertThat(deserialized.getRowKey(new MyEntity())).isEqualTo("5");
     }
 
+    @Test
+    void compactSerialization() throws IOException, ClassNotFoundException {
+        JPALazyDataModel<MyEntity> model;
+        try (var mockedStatic = mockStatic(Beans.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS))) {
+            mockedStatic.when(() -> Beans.getReference(eq(JPALazyDataModel.class), eq(InternalQualifierJPALazyModel.LITERAL)))
+                    .thenReturn(new JPALazyDataModel<>());
+            model = JPALazyDataModel.create(builder -> builder
+                    .entityManager(() -> em).entityClass(MyEntity.class)
+                    .compactSerialization(true)
+                    .build());
+        }
+        // rows are not serializable, so they must not be written
+        model.setWrappedData(List.of(new MyEntity()));
+        assertThat(model.getWrappedData()).hasSize(1);
+        model.setRowCount(42);
+        var deserialized = serializeAndDeserialize(model);
+        assertThat(deserialized.getRowCount()).isEqualTo(42);
+        assertThat(deserialized.getWrappedData()).isNull();
+        assertThat(deserialized.isCompactSerialization()).isTrue();
+        assertThat(model.getSerializedSize()).isPositive();
+    }
+
     @Test
     void serializeWithNonSerializedOptimizer() throws IOException, ClassNotFoundException {
         try (var ns = new NonSerializableRequestScopedMock(rootInteger)) {
@@ -16,11 +16,13 @@
 package com.flowlogix.demo.jeedao;
 
 import com.flowlogix.api.dao.JPANativeQuery;
+import com.flowlogix.api.dao.JPAFinder.CriteriaBuilderAndRoot;
 import com.flowlogix.api.dao.JPAFinder.QueryEnhancement;
 import com.flowlogix.demo.jeedao.entities.UserEntity;
 import com.flowlogix.demo.jeedao.entities.UserEntity_;
 import jakarta.ejb.Stateless;
 import jakarta.inject.Inject;
+import jakarta.persistence.criteria.CriteriaQuery;
 import lombok.experimental.Delegate;
 import org.eclipse.persistence.annotations.BatchFetchType;
 import org.eclipse.persistence.config.QueryHints;
@@ -69,6 +71,26 @@ public class UserDAO {
     // end::daoExtractedParameters[] // @replace regex='.*\n' replacement=""
     // @end
 
+    // @start region="preparedQuery"
+    // tag::preparedQuery[] // @replace regex='.*\n' replacement=""
+    public CountAndList preparedCountAndList(String userName) {
+        // criteria lambdas can't capture any values, those are passed as parameters
+        return new CountAndList(jpaFinder.prepareCount("countByFullName",
+                criteria -> byFullName(criteria.partial(), criteria.query())).get()
+                .setParameter("userName", userName).getSingleResult(),
+                jpaFinder.prepareFind("findByFullName",
+                criteria -> byFullName(criteria.partial(), criteria.query())).get()
+                .setParameter("userName", userName).getResultList());
+    }
+
+    // "where fullName = :userName" clause is only built once
+    private static void byFullName(CriteriaBuilderAndRoot<UserEntity> partial, CriteriaQuery<?> criteria) {
+        criteria.where(partial.builder().equal(partial.root().get(UserEntity_.fullName),
+                partial.builder().parameter(String.class, "userName")));
+    }
+    // end::preparedQuery[] // @replace regex='.*\n' replacement=""
+    // @end
+
     // @start region="nativeQuery"
     // tag::nativeQuery[] // @replace regex='.*\n' replacement=""
     public List<UserEntity> findByNative(String sql) {
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.api.dao;
+
+import java.util.ServiceLoader;
+
+/**
+ * Service Provider Interface, notified after successful bulk updates and deletes,
+ * such as {@link JPAFinder#updateWhere(java.util.function.Consumer, boolean)}
+ * and {@link JPAFinder#deleteWhere(java.util.function.Consumer, boolean)}.
+ * Bulk statements bypass entity listeners, so caches of the entity type can be invalidated here.
+ * Implementations are discovered via {@link ServiceLoader}, and must be thread-safe
+ */
+@FunctionalInterface
+public interface BulkUpdateListener {
+    /**
+     * Called after the bulk statement's JTA transaction commits,
+     * or right after the statement ran if there is no active JTA transaction
+     *
+     * @param entityClass entity class the statement was run against
+     */
+    void bulkUpdated(Class<?> entityClass);
+}
@@ -18,15 +18,23 @@ package com.flowlogix.api.dao;
 import com.flowlogix.jeedao.InheritableDaoHelper;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaDelete;
 import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.CriteriaUpdate;
 import jakarta.persistence.criteria.Root;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 /**
  * Easily add a composable query enhancement criteria to
  * {@link #findAll()} and {@link #findRange(long, long)} methods,
- * as well as {@link #count()} methods
+ * as well as {@link #count()}, and bulk {@link #updateWhere(Consumer)} and {@link #deleteWhere(Consumer)} methods
+ * <p>
+ * Convenience overloads, and methods that can be expressed via the other methods, have default implementations
  * <p>
  * Another differentiator is that this class doesn't require inheritance,
  * although some use cases could inherit from {@link InheritableDaoHelper} class.
@@ -85,6 +93,32 @@ public interface JPAFinder<TT> {
      */
     TypedQuery<TT> findRange(long min, long max, Consumer<QueryCriteria<TT>> queryCriteria);
 
+    /**
+     * find entities with enriched, composable criteria given a specified range,
+     * together with the total number of rows, in a single database round trip.
+     * The total is selected by a scalar {@code COUNT} subquery alongside each row,
+     * which only uses the restriction ({@code where} clause) of the count criteria
+     * <p>
+     * Query criteria should not change the selection, as it's replaced by the entity and the count.
+     * When the range is past the last row, a separate count query is run
+     * <p>
+     * Default implementation runs separate range and count queries
+     *
+     * @param min minimum index, starting with zero
+     * @param max maximum index
+     * @param queryCriteria
+     * @param countQueryCriteria
+     * @param optimizer applies hints to the query, the query's result type is not the entity type
+     * @return page rows and total row count
+     */
+    default RangeWithCount<TT> findRangeWithCount(long min, long max, Consumer<QueryCriteria<TT>> queryCriteria,
+                                                  Consumer<CountQueryCriteria<TT>> countQueryCriteria,
+                                                  UnaryOperator<TypedQuery<TT>> optimizer) {
+        TypedQuery<TT> query = findRange(min, max, queryCriteria);
+        return new RangeWithCount<>((optimizer == null ? query : optimizer.apply(query)).getResultList(),
+                count(countQueryCriteria));
+    }
+
     /**
      * count rows
      * @return row count
@@ -99,6 +133,113 @@ public interface JPAFinder<TT> {
      */
     long count(Consumer<CountQueryCriteria<TT>> countQueryCriteria);
 
+    /**
+     * count with enriched, composable criteria
+     *
+     * @param countQueryCriteria
+     * @param optimizer applies hints to the count query, such as query timeout
+     * @return row count
+     */
+    long count(Consumer<CountQueryCriteria<TT>> countQueryCriteria, UnaryOperator<TypedQuery<Long>> optimizer);
+
+    /**
+     * count with enriched, composable criteria, asynchronously.
+     * Runs on the finder's executor, with its own entity manager and read-only transaction,
+     * outside of the caller's transaction,
+     * so independent queries can run concurrently
+     * <p>
+     * Default implementation runs the query on the caller's thread, since the entity manager
+     * can't be shared with other threads, and completes the stage with its result or failure
+     *
+     * @param countQueryCriteria
+     * @return row count
+     */
+    default CompletionStage<Long> countAsync(Consumer<CountQueryCriteria<TT>> countQueryCriteria) {
+        return CompletableFuture.supplyAsync(() -> count(countQueryCriteria), Runnable::run);
+    }
+
+    /**
+     * find all entities with enriched, composable criteria, asynchronously.
+     * Runs on the finder's executor, with its own entity manager and read-only transaction,
+     * outside of the caller's transaction,
+     * so independent queries can run concurrently. Resulting entities are detached
+     * <p>
+     * Default implementation runs the query on the caller's thread, since the entity manager
+     * can't be shared with other threads, and completes the stage with its result or failure
+     *
+     * @param queryCriteria
+     * @return entities
+     */
+    default CompletionStage<List<TT>> findAllAsync(Consumer<QueryCriteria<TT>> queryCriteria) {
+        return CompletableFuture.supplyAsync(() -> findAll(queryCriteria).getResultList(), Runnable::run);
+    }
+
+    /**
+     * find entities with enriched, composable criteria given a specified range, asynchronously.
+     * Runs on the finder's executor, with its own entity manager and read-only transaction,
+     * outside of the caller's transaction,
+     * so independent queries can run concurrently. Resulting entities are detached
+     * <p>
+     * Default implementation runs the query on the caller's thread, since the entity manager
+     * can't be shared with other threads, and completes the stage with its result or failure
+     *
+     * @param min minimum index, starting with zero
+     * @param max maximum index
+     * @param queryCriteria
+     * @return entities
+     */
+    default CompletionStage<List<TT>> findRangeAsync(long min, long max, Consumer<QueryCriteria<TT>> queryCriteria) {
+        return CompletableFuture.supplyAsync(() -> findRange(min, max, queryCriteria).getResultList(), Runnable::run);
+    }
+
+    /**
+     * update entities matching enriched, composable criteria, via a single bulk {@code UPDATE} statement.
+     * Entities already in the persistence context are not updated
+     * <p>
+     * Example:
+     * <p>
+     * {@code updateWhere(c -> c.query().set(c.root().get(UserEntity_.zipCode), 68502)
+     *        .where(c.builder().equal(c.root().get(UserEntity_.address), "Tree-Lined Blvd")))}
+     *
+     * @param updateCriteria sets the updated attributes and the restriction
+     * @return number of updated rows
+     */
+    default int updateWhere(Consumer<UpdateCriteria<TT>> updateCriteria) {
+        return updateWhere(updateCriteria, false);
+    }
+
+    /**
+     * update entities matching enriched, composable criteria, via a single bulk {@code UPDATE} statement.
+     * {@link BulkUpdateListener}s are notified after the update commits
+     *
+     * @param updateCriteria sets the updated attributes and the restriction
+     * @param evictFromCache evict entities of this type from the shared (second-level) cache after the update
+     * @return number of updated rows
+     */
+    int updateWhere(Consumer<UpdateCriteria<TT>> updateCriteria, boolean evictFromCache);
+
+    /**
+     * delete entities matching enriched, composable criteria, via a single bulk {@code DELETE} statement.
+     * Cascades and lifecycle callbacks are not applied,
+     * and entities already in the persistence context are not removed
+     *
+     * @param deleteCriteria sets the restriction
+     * @return number of deleted rows
+     */
+    default int deleteWhere(Consumer<DeleteCriteria<TT>> deleteCriteria) {
+        return deleteWhere(deleteCriteria, false);
+    }
+
+    /**
+     * delete entities matching enriched, composable criteria, via a single bulk {@code DELETE} statement.
+     * {@link BulkUpdateListener}s are notified after the delete commits
+     *
+     * @param deleteCriteria sets the restriction
+     * @param evictFromCache evict entities of this type from the shared (second-level) cache after the delete
+     * @return number of deleted rows
+     */
+    int deleteWhere(Consumer<DeleteCriteria<TT>> deleteCriteria, boolean evictFromCache);
+
     /**
      * QueryCriteria record contains {@link CriteriaBuilder}, {@link Root} and {@link CriteriaQuery}
      * @param <TT> Entity Type of Criteria
@@ -132,6 +273,48 @@ public interface JPAFinder<TT> {
         }
     }
 
+    /**
+     * Specialized <b>Update</b>Criteria record contains
+     * {@link CriteriaBuilder}, {@link Root} and {@link CriteriaUpdate}
+     * @param <TT> Entity Type of Criteria
+     * @param builder
+     * @param root
+     * @param query
+     */
+    record UpdateCriteria<TT>(CriteriaBuilder builder, Root<TT> root, CriteriaUpdate<TT> query) {
+        /**
+         * @return query criteria builder and root, without the JPA {@link CriteriaUpdate} object
+         */
+        public CriteriaBuilderAndRoot<TT> partial() {
+            return new CriteriaBuilderAndRoot<>(builder, root);
+        }
+    }
+
+    /**
+     * Specialized <b>Delete</b>Criteria record contains
+     * {@link CriteriaBuilder}, {@link Root} and {@link CriteriaDelete}
+     * @param <TT> Entity Type of Criteria
+     * @param builder
+     * @param root
+     * @param query
+     */
+    record DeleteCriteria<TT>(CriteriaBuilder builder, Root<TT> root, CriteriaDelete<TT> query) {
+        /**
+         * @return query criteria builder and root, without the JPA {@link CriteriaDelete} object
+         */
+        public CriteriaBuilderAndRoot<TT> partial() {
+            return new CriteriaBuilderAndRoot<>(builder, root);
+        }
+    }
+
+    /**
+     * Result of {@link #findRangeWithCount(long, long, Consumer, Consumer, UnaryOperator)}
+     * @param <TT> Entity Type
+     * @param rows entities in the requested range
+     * @param count total number of rows matching the count criteria
+     */
+    record RangeWithCount<TT>(List<TT> rows, long count) { }
+
     /**
      * Partial query criteria, only {@link CriteriaBuilder} and {@link Root}
      * Used by enriched count and find query methods / lambdas
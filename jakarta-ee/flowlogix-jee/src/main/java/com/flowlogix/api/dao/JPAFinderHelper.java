@@ -17,10 +17,17 @@ package com.flowlogix.api.dao;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Root;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Enhanced JPA Finder interface that provides access to the entity manager,
@@ -31,6 +38,11 @@ import java.util.function.Supplier;
  * @param <TT> entity type
  */
 public interface JPAFinderHelper<TT> extends JPAFinder<TT> {
+    /**
+     * Number of keys per query used by {@link #findByIds(Collection)}
+     */
+    int DEFAULT_ID_CHUNK_SIZE = 1000;
+
     /**
      * Entity Manager cannot be saved because it's not thread-safe
      * However, supplier can be returned
@@ -62,6 +74,166 @@ public interface JPAFinderHelper<TT> extends JPAFinder<TT> {
      */
     <RR> QueryCriteria<RR> buildQueryCriteria(Class<RR> cls);
 
+    /**
+     * Prepares a reusable find query. Criteria are built and registered as a named query
+     * on first execution only, afterward only the named query is created,
+     * which skips criteria building and query translation.
+     * Criteria must be fixed, and use named parameters created via
+     * {@link CriteriaBuilder#parameter(Class, String)} for the values, which are bound on every execution.
+     * Criteria are identified by their class, so lambdas can't capture any values, or {@code this};
+     * use static methods or fields instead
+     * <p>
+     * Example:
+     * <pre>
+     * {@code
+     * Supplier<TypedQuery<UserEntity>> byName = finder.prepareFind("byName", c -> c.query()
+     *         .where(c.builder().equal(c.root().get(UserEntity_.fullName),
+     *                 c.builder().parameter(String.class, "name"))));
+     * List<UserEntity> users = byName.get().setParameter("name", userName).getResultList();
+     * }
+     * </pre>
+     *
+     * @param name query name, unique for the entity type. Named query names are kept in a reserved namespace,
+     *             so they don't collide with {@code @NamedQuery} names
+     * @param queryCriteria fixed query criteria
+     * @return creates the prepared query for the current entity manager,
+     * which throws {@link IllegalStateException} if the name is already used by different criteria
+     * @throws IllegalArgumentException if criteria capture any values
+     */
+    Supplier<TypedQuery<TT>> prepareFind(String name, Consumer<QueryCriteria<TT>> queryCriteria);
+
+    /**
+     * Prepares a reusable count query, see {@link #prepareFind(String, Consumer)}
+     *
+     * @param name query name, unique for the entity type
+     * @param countQueryCriteria fixed count query criteria
+     * @return creates the prepared count query for the current entity manager
+     * @throws IllegalArgumentException if criteria capture any values
+     */
+    Supplier<TypedQuery<Long>> prepareCount(String name, Consumer<CountQueryCriteria<TT>> countQueryCriteria);
+
+    /**
+     * Finds entities by their primary keys, using {@code IN} lists of at most 1000 keys
+     *
+     * @param ids primary keys, of the entity's ID type, or convertible to it
+     * @return found entities, in the order of the requested keys
+     * @see #findByIds(Collection, int)
+     */
+    default List<TT> findByIds(Collection<?> ids) {
+        return findByIds(ids, DEFAULT_ID_CHUNK_SIZE);
+    }
+
+    /**
+     * Finds entities by their primary keys, using one query per {@code chunkSize} keys, instead of one query per key.
+     * Chunk size should respect the database's limit of {@code IN} list size / number of parameters,
+     * i.e. 1000 for Oracle or 2100 for SQL Server.
+     * Keys that are not found are skipped, duplicate keys are only looked up once.
+     * Keys of other types are converted to the entity's ID type, i.e. {@code Integer} to {@code Long}.
+     * Entities with composite ({@code IdClass}) keys are not supported
+     *
+     * @param ids primary keys, of the entity's ID type, or convertible to it
+     * @param chunkSize maximum number of keys per query
+     * @return found entities, in the order of the requested keys
+     * @throws IllegalArgumentException if a key can't be converted to the entity's ID type without loss
+     */
+    List<TT> findByIds(Collection<?> ids, int chunkSize);
+
+    /**
+     * Streams all entities matching the criteria via a database cursor, reading {@code chunkSize} rows
+     * per round trip, and clearing the persistence context after every chunk,
+     * so the result doesn't have to fit into memory. Entities are detached after their chunk is processed.
+     * Intended for batch processing of large results.
+     * The stream must be closed to release the cursor, and consumed within a transaction
+     * <p>
+     * Example:
+     * <pre>
+     * {@code
+     * try (Stream<UserEntity> users = finder.streamAll(null, 1000)) {
+     *     users.forEach(exporter::write);
+     * }
+     * }
+     * </pre>
+     *
+     * <p>
+     * Default implementation returns the provider's {@link TypedQuery#getResultStream()},
+     * which doesn't clear the persistence context
+     *
+     * @param queryCriteria additional query criteria, or {@code null}
+     * @param chunkSize JDBC fetch size, and number of entities between clearing the persistence context
+     * @return stream of entities, which must be closed
+     */
+    default Stream<TT> streamAll(Consumer<QueryCriteria<TT>> queryCriteria, int chunkSize) {
+        return (queryCriteria == null ? findAll() : findAll(queryCriteria)).getResultStream();
+    }
+
+    /**
+     * Persists all entities, flushing and clearing the persistence context every {@code batchSize} entities,
+     * so it doesn't grow without bound. JDBC batch writing has to be enabled in {@code persistence.xml},
+     * with a batch size that matches {@code batchSize}. Entities that were managed before the call are detached
+     *
+     * @param entities to persist
+     * @param batchSize number of entities per flush
+     * @return number of persisted entities
+     */
+    default long persistAll(Stream<? extends TT> entities, int batchSize) {
+        return writeAll(entities, batchSize, EntityManager::persist);
+    }
+
+    /**
+     * Persists all entities, see {@link #persistAll(Stream, int)}
+     *
+     * @param entities to persist
+     * @param batchSize number of entities per flush
+     * @return number of persisted entities
+     */
+    default long persistAll(Iterable<? extends TT> entities, int batchSize) {
+        return persistAll(StreamSupport.stream(entities.spliterator(), false), batchSize);
+    }
+
+    /**
+     * Merges all entities, flushing and clearing the persistence context every {@code batchSize} entities,
+     * so it doesn't grow without bound. JDBC batch writing has to be enabled in {@code persistence.xml},
+     * with a batch size that matches {@code batchSize}. Entities that were managed before the call are detached
+     *
+     * @param entities to merge
+     * @param batchSize number of entities per flush
+     * @return number of merged entities
+     */
+    default long mergeAll(Stream<? extends TT> entities, int batchSize) {
+        return writeAll(entities, batchSize, EntityManager::merge);
+    }
+
+    /**
+     * Merges all entities, see {@link #mergeAll(Stream, int)}
+     *
+     * @param entities to merge
+     * @param batchSize number of entities per flush
+     * @return number of merged entities
+     */
+    default long mergeAll(Iterable<? extends TT> entities, int batchSize) {
+        return mergeAll(StreamSupport.stream(entities.spliterator(), false), batchSize);
+    }
+
+    private long writeAll(Stream<? extends TT> entities, int batchSize, BiConsumer<EntityManager, TT> writer) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        EntityManager em = getEntityManager().get();
+        long count = 0;
+        for (var iterator = entities.iterator(); iterator.hasNext();) {
+            writer.accept(em, iterator.next());
+            if (++count % batchSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        if (count % batchSize != 0) {
+            em.flush();
+            em.clear();
+        }
+        return count;
+    }
+
     /**
      * Convenience interface for use with {@link lombok.experimental.Delegate} when forwarding methods
      * of {@link EntityManager} so DaoHelper's own methods get exposed correctly
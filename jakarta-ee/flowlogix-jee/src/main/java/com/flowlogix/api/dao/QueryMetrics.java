@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.api.dao;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Service Provider Interface for query metrics.
+ * Receives one {@link Measurement} per executed query or model operation,
+ * and forwards it to the metrics library of choice. Example Micrometer adapter:
+ * <pre>
+ * {@code
+ * QueryMetrics metrics = measurement -> Timer.builder("flowlogix.query")
+ *      .tag("operation", measurement.operation())
+ *      .tag("entity", measurement.entityClass().getSimpleName())
+ *      .tag("model", Objects.toString(measurement.name(), ""))
+ *      .register(registry).record(measurement.elapsed());
+ * }
+ * </pre>
+ * Default is {@link #NONE}, which does not measure anything, and has no overhead
+ */
+@FunctionalInterface
+public interface QueryMetrics extends Serializable {
+    /**
+     * Metrics are disabled
+     */
+    QueryMetrics NONE = measurement -> { };
+
+    /**
+     * Operation being measured
+     *
+     * @param name i.e. {@code findAll}, {@code count}, {@code load}
+     * @param entityClass entity class the operation was run against
+     * @param modelName model name, or {@code null} if not measured by a named model
+     * @param first index of the first requested row, {@code -1} if not paged
+     * @param pageSize requested page size, {@code -1} if not paged
+     * @param criteria normalized filter and sort criteria, or {@code null} if not known
+     * @param query SQL or provider's description of the query, or {@code null} if not known
+     */
+    record Operation(String name, Class<?> entityClass, String modelName, int first, int pageSize,
+                     Object criteria, String query) {
+        /**
+         * Operation without criteria and query
+         *
+         * @param name
+         * @param entityClass
+         * @param modelName
+         * @param first
+         * @param pageSize
+         */
+        public Operation(String name, Class<?> entityClass, String modelName, int first, int pageSize) {
+            this(name, entityClass, modelName, first, pageSize, null, null);
+        }
+    }
+
+    /**
+     * Single measured operation
+     *
+     * @param operation what was measured
+     * @param elapsed time the operation took
+     * @param rows number of rows returned, or count result, {@code -1} if unknown
+     */
+    record Measurement(Operation operation, Duration elapsed, long rows) { }
+
+    /**
+     * Record a measurement
+     *
+     * @param measurement
+     */
+    void record(Measurement measurement);
+
+    /**
+     * Records measurements into both this and the other metrics
+     *
+     * @param other
+     * @return combined metrics
+     */
+    default QueryMetrics andThen(QueryMetrics other) {
+        if (this == NONE) {
+            return other;
+        } else if (other == NONE) {
+            return this;
+        }
+        return measurement -> {
+            record(measurement);
+            other.record(measurement);
+        };
+    }
+
+    /**
+     * Measures the action, unless metrics are {@link #NONE}.
+     * Operation is described after the action completes, and only if metrics are enabled
+     *
+     * @param <RR> result type
+     * @param metrics where to record the measurement
+     * @param operation description of the operation
+     * @param action operation to measure
+     * @param rows number of rows in the result
+     * @return result of the action
+     */
+    static <RR> RR measure(QueryMetrics metrics, Supplier<Operation> operation,
+                           Supplier<RR> action, ToLongFunction<RR> rows) {
+        if (metrics == NONE) {
+            return action.get();
+        }
+        long start = System.nanoTime();
+        RR result = action.get();
+        var elapsed = Duration.ofNanos(System.nanoTime() - start);
+        metrics.record(new Measurement(operation.get(), elapsed, rows.applyAsLong(result)));
+        return result;
+    }
+}
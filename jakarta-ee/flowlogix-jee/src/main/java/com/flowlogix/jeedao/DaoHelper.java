@@ -17,23 +17,51 @@ package com.flowlogix.jeedao;
 
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodType;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import com.flowlogix.api.dao.BulkUpdateListener;
 import com.flowlogix.api.dao.JPAFinder;
 import com.flowlogix.api.dao.JPANativeQuery;
+import com.flowlogix.api.dao.QueryMetrics;
+import com.flowlogix.api.dao.QueryMetrics.Operation;
+import com.flowlogix.util.TypeConverter;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.Query;
+import jakarta.persistence.Tuple;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaDelete;
 import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.CriteriaUpdate;
 import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
 import lombok.Builder;
 import lombok.NonNull;
 import org.omnifaces.util.Beans;
+import org.omnifaces.util.Lazy;
 import org.omnifaces.util.Lazy.SerializableSupplier;
 import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNullElse;
 
 /**
  * Lightweight wrapper around common JPA methods
@@ -42,8 +70,14 @@ import static java.lang.Math.toIntExact;
  *
  * @param <TT>
  */
+@SuppressWarnings("MethodCount")
 public final class DaoHelper<TT> implements JPANativeQuery<TT>, Serializable {
-    private static final long serialVersionUID = 5L;
+    private static final long serialVersionUID = 8L;
+    private static final String DEFAULT_EXECUTOR = "java:comp/DefaultManagedExecutorService";
+    private static final String TRANSACTION_REGISTRY = "java:comp/TransactionSynchronizationRegistry";
+    private static final List<BulkUpdateListener> BULK_UPDATE_LISTENERS =
+            ServiceLoader.load(BulkUpdateListener.class, DaoHelper.class.getClassLoader()).stream()
+                    .map(ServiceLoader.Provider::get).toList();
 
     /**
      * Return entity manager to operate on
@@ -53,11 +87,31 @@ public final class DaoHelper<TT> implements JPANativeQuery<TT>, Serializable {
      * entity class
      */
     private final @NonNull Class<TT> entityClass;
+    /**
+     * query metrics, {@link QueryMetrics#NONE} by default
+     */
+    private final @NonNull QueryMetrics metrics;
+    /**
+     * executor of asynchronous queries, {@link #defaultExecutor()} by default, resolved once
+     */
+    private final @NonNull Lazy<Executor> asyncExecutor;
 
-    @Builder
     public DaoHelper(@NonNull SerializableSupplier<EntityManager> entityManager, @NonNull Class<TT> entityClass) {
+        this(entityManager, entityClass, null);
+    }
+
+    public DaoHelper(@NonNull SerializableSupplier<EntityManager> entityManager, @NonNull Class<TT> entityClass,
+                     QueryMetrics metrics) {
+        this(entityManager, entityClass, metrics, null);
+    }
+
+    @Builder
+    public DaoHelper(@NonNull SerializableSupplier<EntityManager> entityManager, @NonNull Class<TT> entityClass,
+                     QueryMetrics metrics, SerializableSupplier<Executor> asyncExecutor) {
         this.entityManager = entityManager;
         this.entityClass = entityClass;
+        this.metrics = requireNonNullElse(metrics, QueryMetrics.NONE);
+        this.asyncExecutor = new Lazy<>(requireNonNullElse(asyncExecutor, defaultExecutor()));
     }
 
     /**
@@ -73,7 +127,7 @@ public final class DaoHelper<TT> implements JPANativeQuery<TT>, Serializable {
      */
     @Override
     public TypedQuery<TT> findAll(Consumer<QueryCriteria<TT>> queryCriteria) {
-        return createFindQuery(queryCriteria);
+        return MeteredQuery.wrap(createFindQuery(queryCriteria), TypedQuery.class, metrics, "findAll", entityClass, null);
     }
 
     /**
@@ -92,7 +146,58 @@ public final class DaoHelper<TT> implements JPANativeQuery<TT>, Serializable {
         TypedQuery<TT> tq = createFindQuery(queryCriteria);
         tq.setMaxResults(toIntExact(max - min));
         tq.setFirstResult(toIntExact(min));
-        return tq;
+        return MeteredQuery.wrap(tq, TypedQuery.class, metrics, "findRange", entityClass, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RangeWithCount<TT> findRangeWithCount(long min, long max, Consumer<QueryCriteria<TT>> queryCriteria,
+                                                 Consumer<CountQueryCriteria<TT>> countQueryCriteria,
+                                                 UnaryOperator<TypedQuery<TT>> optimizer) {
+        return QueryMetrics.measure(metrics, () -> new Operation("findRangeWithCount", entityClass, null,
+                        toIntExact(min), toIntExact(max - min)),
+                () -> rangeWithCount(min, max, queryCriteria, countQueryCriteria, optimizer),
+                range -> range.rows().size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private RangeWithCount<TT> rangeWithCount(long min, long max, Consumer<QueryCriteria<TT>> queryCriteria,
+                                              Consumer<CountQueryCriteria<TT>> countQueryCriteria,
+                                              UnaryOperator<TypedQuery<TT>> optimizer) {
+        CriteriaBuilder cb = em().getCriteriaBuilder();
+        CriteriaQuery<Tuple> cq = cb.createTupleQuery();
+        Root<TT> rt = cq.from(entityClass);
+        if (queryCriteria != null) {
+            queryCriteria.accept(new QueryCriteria<>(cb, rt, (CriteriaQuery<TT>) (CriteriaQuery<?>) cq));
+        }
+        Subquery<Long> countQuery = cq.subquery(Long.class);
+        Root<TT> countRoot = countQuery.from(entityClass);
+        countQuery.select(cb.count(countRoot));
+        if (countQueryCriteria != null) {
+            // count criteria is built on a scratch query, only its restriction is transferred to the subquery
+            CriteriaQuery<Long> scratch = cb.createQuery(Long.class);
+            countQueryCriteria.accept(new CountQueryCriteria<>(cb, countRoot, scratch));
+            if (scratch.getRestriction() != null) {
+                countQuery.where(scratch.getRestriction());
+            }
+        }
+        cq.multiselect(rt, countQuery);
+        TypedQuery<Tuple> tq = em().createQuery(cq);
+        tq.setMaxResults(toIntExact(max - min));
+        tq.setFirstResult(toIntExact(min));
+        if (optimizer != null) {
+            tq = (TypedQuery<Tuple>) (TypedQuery<?>) optimizer.apply((TypedQuery<TT>) (TypedQuery<?>) tq);
+        }
+        List<Tuple> tuples = tq.getResultList();
+        List<TT> rows = tuples.stream().map(tuple -> tuple.get(0, entityClass)).toList();
+        if (!tuples.isEmpty()) {
+            return new RangeWithCount<>(rows, tuples.get(0).get(1, Long.class));
+        } else if (min == 0) {
+            return new RangeWithCount<>(rows, 0);
+        }
+        return new RangeWithCount<>(rows, count(countQueryCriteria));
     }
 
     /**
@@ -108,15 +213,77 @@ public final class DaoHelper<TT> implements JPANativeQuery<TT>, Serializable {
      */
     @Override
     public long count(Consumer<CountQueryCriteria<TT>> countQueryCriteria) {
+        return count(countQueryCriteria, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long count(Consumer<CountQueryCriteria<TT>> countQueryCriteria, UnaryOperator<TypedQuery<Long>> optimizer) {
+        TypedQuery<Long> created = createCountQuery(countQueryCriteria);
+        TypedQuery<Long> q = optimizer != null ? optimizer.apply(created) : created;
+        return QueryMetrics.measure(metrics, () -> new Operation("count", entityClass, null, -1, -1,
+                null, String.valueOf(q)), q::getSingleResult, Long::longValue);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletionStage<Long> countAsync(Consumer<CountQueryCriteria<TT>> countQueryCriteria) {
+        return async(dao -> dao.count(countQueryCriteria));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletionStage<List<TT>> findAllAsync(Consumer<QueryCriteria<TT>> queryCriteria) {
+        return async(dao -> dao.findAll(queryCriteria).getResultList());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletionStage<List<TT>> findRangeAsync(long min, long max, Consumer<QueryCriteria<TT>> queryCriteria) {
+        return async(dao -> dao.findRange(min, max, queryCriteria).getResultList());
+    }
+
+    /**
+     * Runs the query on the executor, with its own entity manager and transaction,
+     * since entity managers are not thread-safe
+     *
+     * @param query runs the query with a {@link DaoHelper} bound to the task's entity manager
+     * @return query result
+     */
+    private <RR> CompletionStage<RR> async(Function<DaoHelper<TT>, RR> query) {
+        EntityManagerFactory emf = em().getEntityManagerFactory();
+        return CompletableFuture.supplyAsync(() -> IsolatedQuery.run(emf,
+                em -> query.apply(new DaoHelper<>(() -> em, entityClass, metrics, null))), asyncExecutor.get());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int updateWhere(@NonNull Consumer<UpdateCriteria<TT>> updateCriteria, boolean evictFromCache) {
         var criteriaBuilder = em().getCriteriaBuilder();
-        CriteriaQuery<Long> cq = criteriaBuilder.createQuery(Long.class);
-        Root<TT> rt = cq.from(entityClass);
-        cq.select(criteriaBuilder.count(rt));
-        if (countQueryCriteria != null) {
-            countQueryCriteria.accept(new CountQueryCriteria<>(criteriaBuilder, rt, cq));
-        }
-        TypedQuery<Long> q = em().createQuery(cq);
-        return q.getSingleResult();
+        CriteriaUpdate<TT> cu = criteriaBuilder.createCriteriaUpdate(entityClass);
+        updateCriteria.accept(new UpdateCriteria<>(criteriaBuilder, cu.from(entityClass), cu));
+        return executeUpdate("updateWhere", em().createQuery(cu), evictFromCache);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int deleteWhere(@NonNull Consumer<DeleteCriteria<TT>> deleteCriteria, boolean evictFromCache) {
+        var criteriaBuilder = em().getCriteriaBuilder();
+        CriteriaDelete<TT> cd = criteriaBuilder.createCriteriaDelete(entityClass);
+        deleteCriteria.accept(new DeleteCriteria<>(criteriaBuilder, cd.from(entityClass), cd));
+        return executeUpdate("deleteWhere", em().createQuery(cd), evictFromCache);
     }
 
     /**
@@ -162,13 +329,74 @@ public final class DaoHelper<TT> implements JPANativeQuery<TT>, Serializable {
         return new QueryCriteria<>(cb, cq.from(cls), cq);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Supplier<TypedQuery<TT>> prepareFind(@NonNull String name,
+                                                @NonNull Consumer<QueryCriteria<TT>> queryCriteria) {
+        PreparedQueries.requireFixed(queryCriteria);
+        String queryName = PreparedQueries.name(entityClass, name);
+        // criteria lambdas are instances of the same class when they come from the same place in the code
+        return () -> MeteredQuery.wrap(PreparedQueries.create(em(), queryName, entityClass, queryCriteria.getClass(),
+                () -> createFindQuery(queryCriteria)), TypedQuery.class, metrics, "findPrepared", entityClass, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Supplier<TypedQuery<Long>> prepareCount(@NonNull String name,
+                                                   @NonNull Consumer<CountQueryCriteria<TT>> countQueryCriteria) {
+        PreparedQueries.requireFixed(countQueryCriteria);
+        String queryName = PreparedQueries.name(entityClass, name);
+        return () -> MeteredQuery.wrap(PreparedQueries.create(em(), queryName, Long.class, countQueryCriteria.getClass(),
+                () -> createCountQuery(countQueryCriteria)), TypedQuery.class, metrics, "countPrepared", entityClass, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<TT> findByIds(@NonNull Collection<?> ids, int chunkSize) {
+        checkBatchSize(chunkSize);
+        return QueryMetrics.measure(metrics, () -> new Operation("findByIds", entityClass, null, -1, chunkSize),
+                () -> byIds(ids, chunkSize), List::size);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Stream<TT> streamAll(Consumer<QueryCriteria<TT>> queryCriteria, int chunkSize) {
+        checkBatchSize(chunkSize);
+        EntityManager em = em();
+        return StreamingQuery.stream(createFindQuery(queryCriteria), chunkSize, em::clear);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long persistAll(Stream<? extends TT> entities, int batchSize) {
+        return writeAll("persistAll", batchSize, () -> JPANativeQuery.super.persistAll(entities, batchSize));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long mergeAll(Stream<? extends TT> entities, int batchSize) {
+        return writeAll("mergeAll", batchSize, () -> JPANativeQuery.super.mergeAll(entities, batchSize));
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public TypedNativeQuery createNativeQuery(String sql, Class<?> resultClass) {
         Query q = em().createNativeQuery(sql, resultClass);
-        return new TypedNativeQuery(q);
+        return new TypedNativeQuery(MeteredQuery.wrap(q, Query.class, metrics, "nativeQuery", entityClass, sql));
     }
 
     /**
@@ -177,7 +405,26 @@ public final class DaoHelper<TT> implements JPANativeQuery<TT>, Serializable {
     @Override
     public TypedNativeQuery createNativeQuery(String sql, String resultMapping) {
         Query q = em().createNativeQuery(sql, resultMapping);
-        return new TypedNativeQuery(q);
+        return new TypedNativeQuery(MeteredQuery.wrap(q, Query.class, metrics, "nativeQuery", entityClass, sql));
+    }
+
+    /**
+     * Default executor for asynchronous queries, Jakarta Concurrency's default {@code ManagedExecutorService},
+     * which propagates the application context to the tasks.
+     * Outside of the container, {@code asyncExecutor} has to be specified in the builder
+     *
+     * @return {@link SerializableSupplier} of the default {@link Executor}
+     * @throws IllegalStateException from the supplier, if the default executor is not available
+     */
+    public static SerializableSupplier<Executor> defaultExecutor() {
+        return () -> {
+            try {
+                return InitialContext.doLookup(DEFAULT_EXECUTOR);
+            } catch (NamingException e) {
+                throw new IllegalStateException("Default ManagedExecutorService is not available, "
+                        + "specify asyncExecutor in the DaoHelper builder", e);
+            }
+        };
     }
 
     /**
@@ -205,6 +452,112 @@ public final class DaoHelper<TT> implements JPANativeQuery<TT>, Serializable {
     }
 
 
+    private long writeAll(String operation, int batchSize, Supplier<Long> write) {
+        return QueryMetrics.measure(metrics, () -> new Operation(operation, entityClass, null, -1, batchSize),
+                write, Long::longValue);
+    }
+
+    private List<TT> byIds(Collection<?> ids, int chunkSize) {
+        EntityType<TT> entityType = em().getMetamodel().entity(entityClass);
+        if (!entityType.hasSingleIdAttribute()) {
+            throw new IllegalArgumentException("Composite keys are not supported: " + entityClass.getName());
+        }
+        Class<?> idType = entityType.getIdType().getJavaType();
+        // results are matched by their identifiers, which are of the primary key's type
+        var keys = ids.stream().map(id -> toIdType(id, idType)).distinct().toList();
+        var idAttribute = entityType.getId(idType);
+        var unitUtil = em().getEntityManagerFactory().getPersistenceUnitUtil();
+        var found = new HashMap<Object, TT>(keys.size());
+        for (int first = 0; first < keys.size(); first += chunkSize) {
+            var chunk = keys.subList(first, Math.min(first + chunkSize, keys.size()));
+            createFindQuery(criteria -> criteria.query().where(criteria.root().get(idAttribute).in(chunk)))
+                    .getResultList().forEach(entity -> found.put(unitUtil.getIdentifier(entity), entity));
+        }
+        return keys.stream().map(found::get).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Converts the ID to the primary key's type, i.e. {@code Integer} or {@code String} to {@code Long}
+     *
+     * @param id
+     * @param idType primary key's type
+     * @return ID of the primary key's type
+     * @throws IllegalArgumentException if the ID can't be converted without loss
+     */
+    private Object toIdType(Object id, Class<?> idType) {
+        if (id == null || MethodType.methodType(idType).wrap().returnType().isInstance(id)) {
+            return id;
+        }
+        Exception cause = null;
+        try {
+            var converted = TypeConverter.checkAndConvert(id.toString(), idType);
+            if (converted.isValid()) {
+                return converted.getValue();
+            }
+        } catch (Exception e) {
+            // primary key's type has no conversion from string
+            cause = e;
+        }
+        throw new IllegalArgumentException(String.format("ID %s of type %s does not match primary key type %s of %s",
+                id, id.getClass().getName(), idType.getName(), entityClass.getName()), cause);
+    }
+
+    private int executeUpdate(String operation, Query query, boolean evictFromCache) {
+        int updated = MeteredQuery.wrap(query, Query.class, metrics, operation, entityClass, null).executeUpdate();
+        if (evictFromCache) {
+            // matching rows are not known, so the whole entity type is evicted
+            em().getEntityManagerFactory().getCache().evict(entityClass);
+        }
+        afterCommit(() -> BULK_UPDATE_LISTENERS.forEach(listener -> listener.bulkUpdated(entityClass)));
+        return updated;
+    }
+
+    /**
+     * Within a JTA transaction, runs after it commits, so listeners don't act on rolled back statements,
+     * and caches they invalidate aren't filled again with data from before the commit.
+     * Without a transaction, or outside of a container, runs immediately
+     */
+    private static void afterCommit(Runnable action) {
+        TransactionSynchronizationRegistry registry;
+        try {
+            registry = InitialContext.doLookup(TRANSACTION_REGISTRY);
+        } catch (NamingException e) {
+            registry = null;
+        }
+        if (registry == null || registry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            action.run();
+            return;
+        }
+        registry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() { }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    action.run();
+                }
+            }
+        });
+    }
+
+    private static void checkBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+    }
+
+    private TypedQuery<Long> createCountQuery(Consumer<CountQueryCriteria<TT>> countQueryCriteria) {
+        var criteriaBuilder = em().getCriteriaBuilder();
+        CriteriaQuery<Long> cq = criteriaBuilder.createQuery(Long.class);
+        Root<TT> rt = cq.from(entityClass);
+        cq.select(criteriaBuilder.count(rt));
+        if (countQueryCriteria != null) {
+            countQueryCriteria.accept(new CountQueryCriteria<>(criteriaBuilder, rt, cq));
+        }
+        return em().createQuery(cq);
+    }
+
     private TypedQuery<TT> createFindQuery(Consumer<QueryCriteria<TT>> queryCriteria) {
         var qc = buildQueryCriteria();
         qc.query().select(qc.root());
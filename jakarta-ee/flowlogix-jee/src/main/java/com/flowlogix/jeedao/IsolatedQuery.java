@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import jakarta.transaction.NotSupportedException;
+import jakarta.transaction.SystemException;
+import jakarta.transaction.UserTransaction;
+import java.util.function.Function;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import lombok.SneakyThrows;
+
+/**
+ * Runs a read-only query with its own entity manager, created from the factory on the current thread,
+ * and its own transaction, which is rolled back afterward.
+ * Used by asynchronous queries, since entity managers can't be shared between threads.
+ * Resource-local entity managers use their own transaction,
+ * JTA entity managers join a new {@link UserTransaction}, when one is available.
+ * Outside the container, without either, queries run without a transaction
+ */
+final class IsolatedQuery {
+    private static final String USER_TRANSACTION = "java:comp/UserTransaction";
+
+    private IsolatedQuery() { }
+
+    /**
+     * Run the query
+     *
+     * @param emf creates the entity manager
+     * @param query runs the query with the entity manager
+     * @return query result, entities are detached
+     */
+    static <RR> RR run(EntityManagerFactory emf, Function<EntityManager, RR> query) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            Runnable rollback = begin(em);
+            try {
+                return query.apply(em);
+            } finally {
+                rollback.run();
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * @return rolls back the transaction
+     */
+    @SneakyThrows({SystemException.class, NotSupportedException.class})
+    private static Runnable begin(EntityManager em) {
+        var transaction = resourceLocalTransaction(em);
+        if (transaction != null) {
+            transaction.begin();
+            return transaction::rollback;
+        }
+        UserTransaction userTransaction;
+        try {
+            userTransaction = InitialContext.doLookup(USER_TRANSACTION);
+        } catch (NamingException e) {
+            // outside the container, queries run without a transaction
+            return () -> { };
+        }
+        userTransaction.begin();
+        em.joinTransaction();
+        return () -> rollback(userTransaction);
+    }
+
+    private static EntityTransaction resourceLocalTransaction(EntityManager em) {
+        try {
+            return em.getTransaction();
+        } catch (IllegalStateException e) {
+            // JTA entity manager
+            return null;
+        }
+    }
+
+    @SneakyThrows(SystemException.class)
+    private static void rollback(UserTransaction userTransaction) {
+        userTransaction.rollback();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao;
+
+import com.flowlogix.api.dao.QueryMetrics;
+import com.flowlogix.api.dao.QueryMetrics.Operation;
+import jakarta.persistence.Query;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Set;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Wraps queries returned by {@link DaoHelper}, so their execution is measured by {@link QueryMetrics}.
+ * Queries are returned as-is when metrics are disabled
+ */
+@RequiredArgsConstructor
+final class MeteredQuery implements InvocationHandler {
+    private static final Set<String> EXECUTE_METHODS = Set.of("getResultList", "getSingleResult",
+            "getSingleResultOrNull", "executeUpdate");
+    private final Query query;
+    private final QueryMetrics metrics;
+    private final String operation;
+    private final Class<?> entityClass;
+    private final String sql;
+
+    @SuppressWarnings("unchecked")
+    static <QQ extends Query> QQ wrap(QQ query, Class<? super QQ> type, QueryMetrics metrics,
+                                      String operation, Class<?> entityClass, String sql) {
+        if (metrics == QueryMetrics.NONE) {
+            return query;
+        }
+        return (QQ) Proxy.newProxyInstance(MeteredQuery.class.getClassLoader(), new Class<?>[] {type},
+                new MeteredQuery(query, metrics, operation, entityClass, sql));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (EXECUTE_METHODS.contains(method.getName())) {
+            return QueryMetrics.measure(metrics, this::describe, () -> invokeTarget(method, args), MeteredQuery::rows);
+        }
+        Object result = invokeTarget(method, args);
+        // fluent setters return the query itself, keep returning the metered query
+        return result == query ? proxy : result;
+    }
+
+    /**
+     * Providers don't have a portable way to get generated SQL, however their {@code toString()}
+     * usually describes the query, and sometimes includes the SQL
+     */
+    private Operation describe() {
+        int maxResults = query.getMaxResults();
+        return new Operation(operation, entityClass, null, query.getFirstResult(),
+                maxResults == Integer.MAX_VALUE ? -1 : maxResults, null, sql != null ? sql : String.valueOf(query));
+    }
+
+    private Object invokeTarget(Method method, Object[] args) {
+        try {
+            return method.invoke(query, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long rows(Object result) {
+        if (result instanceof List<?> list) {
+            return list.size();
+        } else if (result instanceof Number number) {
+            return number.longValue();
+        }
+        return result == null ? 0 : 1;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.TypedQuery;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Registers criteria queries as named queries, once per {@link EntityManagerFactory},
+ * so subsequent executions skip building and translating the criteria.
+ * Names are in a reserved namespace, so they don't collide with application's {@code @NamedQuery} names.
+ * Shared by {@link DaoHelper} prepared queries and the data model's query shape cache
+ */
+public final class PreparedQueries {
+    private static final String PREFIX = "flowlogix:DaoHelper:";
+    /**
+     * Registered names, and where their criteria came from.
+     * Only registered named queries are created, since failed named query lookups
+     * would mark the active transaction for rollback
+     */
+    private static final Map<EntityManagerFactory, Map<String, Object>> REGISTERED =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private PreparedQueries() { }
+
+    /**
+     * Named query name, in the reserved namespace
+     *
+     * @param entityClass
+     * @param name name of the prepared query
+     * @return named query name
+     */
+    static String name(Class<?> entityClass, String name) {
+        return String.format("%s%s:%s", PREFIX, entityClass.getName(), name);
+    }
+
+    /**
+     * Criteria identify the prepared query by their class, so they can't hold any state.
+     * Lambdas that capture values, or {@code this}, are instances of the same class for every value,
+     * and would silently reuse the query built from the first value
+     *
+     * @param criteria query criteria
+     * @throws IllegalArgumentException if the criteria have instance fields, i.e. capture values
+     */
+    static void requireFixed(Object criteria) {
+        if (Arrays.stream(criteria.getClass().getDeclaredFields())
+                .anyMatch(field -> !Modifier.isStatic(field.getModifiers()))) {
+            throw new IllegalArgumentException(String.format("Prepared query criteria %s must not capture any values, "
+                    + "use parameters instead", criteria.getClass().getName()));
+        }
+    }
+
+    /**
+     * Creates the named query, registering it first if needed.
+     * Concurrent first executions may register the same query twice, which replaces it with an identical one
+     *
+     * @param em entity manager
+     * @param name named query name
+     * @param resultClass query result type
+     * @param source where the query comes from, together with the result type identifies the query
+     * @param query builds the query to register
+     * @return named query
+     * @throws IllegalStateException if the name is already registered with a different query
+     */
+    public static <RR> TypedQuery<RR> create(EntityManager em, String name, Class<RR> resultClass, Object source,
+                                             Supplier<TypedQuery<RR>> query) {
+        EntityManagerFactory emf = em.getEntityManagerFactory();
+        Map<String, Object> registered = REGISTERED.computeIfAbsent(emf, key -> new ConcurrentHashMap<>());
+        var identity = List.of(resultClass, source);
+        Object existing = registered.get(name);
+        if (existing == null) {
+            emf.addNamedQuery(name, query.get());
+            existing = Objects.requireNonNullElse(registered.putIfAbsent(name, identity), identity);
+        }
+        if (!existing.equals(identity)) {
+            throw new IllegalStateException(String.format("Prepared query %s is already registered with a different query",
+                    name));
+        }
+        return em.createNamedQuery(name, resultClass);
+    }
+}
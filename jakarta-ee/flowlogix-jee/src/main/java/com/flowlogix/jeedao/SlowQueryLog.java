@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao;
+
+import com.flowlogix.api.dao.QueryMetrics;
+import java.io.Serial;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.Builder;
+import lombok.Builder.Default;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link QueryMetrics} that logs operations which take longer than the threshold,
+ * along with the entity class, normalized filter / sort criteria, first row, page size
+ * and the query, when available.
+ * <p>
+ * Logging is sampled and rate-limited, so it can't become a bottleneck when everything is slow,
+ * i.e. during an incident. Number of suppressed messages is reported with the next logged message.
+ * Can be combined with other metrics via {@link QueryMetrics#andThen(QueryMetrics)}
+ * <p>
+ * Example:
+ * <pre>
+ * {@code
+ * JPAFinder<UserEntity> finder = DaoHelper.<UserEntity>builder().entityManager(() -> em)
+ *      .entityClass(UserEntity.class)
+ *      .metrics(SlowQueryLog.builder().threshold(Duration.ofMillis(500)).build())
+ *      .build();
+ * }
+ * </pre>
+ */
+@Slf4j
+@Builder(toBuilder = true)
+public final class SlowQueryLog implements QueryMetrics {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Operations that take longer than this are logged, default is one second
+     */
+    @Default
+    private final @Getter @NonNull Duration threshold = Duration.ofSeconds(1);
+    /**
+     * Fraction of slow operations that are logged, between 0 and 1, default is 1 (all of them)
+     */
+    @Default
+    private final @Getter double sampleRate = 1;
+    /**
+     * Maximum number of messages logged per {@link #rateInterval}, default is 10
+     */
+    @Default
+    private final @Getter int rateLimit = 10;
+    /**
+     * Interval of the {@link #rateLimit}, default is one minute
+     */
+    @Default
+    private final @Getter @NonNull Duration rateInterval = Duration.ofMinutes(1);
+
+    private final transient AtomicReference<Window> window = new AtomicReference<>();
+    private final transient AtomicLong suppressed = new AtomicLong();
+
+    private record Window(long start, AtomicLong logged) { }
+
+    @Override
+    public void record(Measurement measurement) {
+        if (measurement.elapsed().compareTo(threshold) <= 0) {
+            return;
+        }
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        if (!acquire()) {
+            suppressed.incrementAndGet();
+            return;
+        }
+        var operation = measurement.operation();
+        log.warn("Slow {} of {}{}: {} ms, first: {}, page size: {}, rows: {}, criteria: {}, query: {}{}",
+                operation.name(), operation.entityClass().getName(),
+                operation.modelName() == null ? "" : " (" + operation.modelName() + ")",
+                measurement.elapsed().toMillis(), operation.first(), operation.pageSize(), measurement.rows(),
+                operation.criteria(), operation.query(), suppressedMessage());
+    }
+
+    private boolean acquire() {
+        long now = System.nanoTime();
+        var current = window.get();
+        if (current == null || now - current.start() >= rateInterval.toNanos()) {
+            var next = new Window(now, new AtomicLong());
+            current = window.compareAndSet(current, next) ? next : window.get();
+        }
+        return current.logged().incrementAndGet() <= rateLimit;
+    }
+
+    private String suppressedMessage() {
+        long count = suppressed.getAndSet(0);
+        return count == 0 ? "" : String.format(" (%d messages suppressed)", count);
+    }
+
+    /**
+     * Rate limiting state isn't serialized
+     */
+    @Serial
+    private Object readResolve() {
+        return toBuilder().build();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2011-2025 Flow Logix, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flowlogix.jeedao;
+
+import jakarta.persistence.TypedQuery;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Streams query results via a database cursor, clearing the persistence context
+ * after every chunk of rows, so the heap doesn't have to hold the whole result.
+ * <p>
+ * EclipseLink's {@link TypedQuery#getResultStream()} reads the whole result list,
+ * so its scrollable cursor is used directly. Other providers' result streams are already backed by a cursor.
+ */
+@RequiredArgsConstructor
+final class StreamingQuery<TT> implements Iterator<TT> {
+    private static final String ECLIPSELINK_PACKAGE = "org.eclipse.persistence.";
+    private static final String ECLIPSELINK_FETCH_SIZE = "eclipselink.jdbc.fetch-size";
+    private static final String ECLIPSELINK_SCROLLABLE_CURSOR = "eclipselink.cursor.scrollable";
+    private static final String ECLIPSELINK_RESULT_SET_TYPE = "eclipselink.cursor.scrollable.result-set-type";
+    private static final String HIBERNATE_FETCH_SIZE = "org.hibernate.fetchSize";
+    private final Iterator<TT> rows;
+    private final int chunkSize;
+    private final Runnable clear;
+    private long count;
+    private long clearedAt;
+
+    @SuppressWarnings("unchecked")
+    static <TT> Stream<TT> stream(TypedQuery<TT> query, int chunkSize, Runnable clear) {
+        // unrecognized hints are ignored by the provider
+        Map.of(ECLIPSELINK_FETCH_SIZE, chunkSize, HIBERNATE_FETCH_SIZE, chunkSize).forEach(query::setHint);
+        Iterator<TT> rows;
+        Runnable close;
+        if (query.unwrap(TypedQuery.class).getClass().getName().startsWith(ECLIPSELINK_PACKAGE)) {
+            query.setHint(ECLIPSELINK_SCROLLABLE_CURSOR, true);
+            query.setHint(ECLIPSELINK_RESULT_SET_TYPE, "ForwardOnly");
+            rows = (Iterator<TT>) query.getSingleResult();
+            close = () -> closeCursor(rows);
+        } else {
+            Stream<TT> results = query.getResultStream();
+            rows = results.iterator();
+            close = results::close;
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new StreamingQuery<>(rows, chunkSize, clear),
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(close);
+    }
+
+    @Override
+    public boolean hasNext() {
+        endChunk();
+        return rows.hasNext();
+    }
+
+    @Override
+    public TT next() {
+        endChunk();
+        ++count;
+        return rows.next();
+    }
+
+    /**
+     * Clears the persistence context before the first row of the next chunk is read,
+     * so rows of the current chunk stay managed while they are processed
+     */
+    private void endChunk() {
+        if (count > clearedAt && count % chunkSize == 0) {
+            clear.run();
+            clearedAt = count;
+        }
+    }
+
+    /**
+     * EclipseLink's cursor is not {@link AutoCloseable}
+     */
+    private static void closeCursor(Object cursor) {
+        try {
+            cursor.getClass().getMethod("close").invoke(cursor);
+        } catch (InvocationTargetException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -15,26 +15,46 @@
  */
 package com.flowlogix.jeedao;
 
+import com.flowlogix.api.dao.JPAFinder.RangeWithCount;
+import com.flowlogix.api.dao.QueryMetrics.Measurement;
+import com.flowlogix.api.dao.QueryMetrics.Operation;
 import com.flowlogix.util.SerializeTester;
 import java.io.IOException;
 import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
 import java.util.stream.Stream;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.Query;
+import jakarta.persistence.Tuple;
 import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaDelete;
 import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.CriteriaUpdate;
 import lombok.experimental.Delegate;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatExceptionOfType;
 import org.junit.jupiter.api.Test;
 import org.omnifaces.util.Beans;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.withSettings;
 
@@ -43,6 +63,7 @@ import static org.mockito.Mockito.withSettings;
  * @author lprimak
  */
 class FacadeTest implements Serializable {
+    private static final AtomicInteger PREPARED_CRITERIA_BUILT = new AtomicInteger();
     private final EntityManager em = mock(EntityManager.class, withSettings().serializable()
             .defaultAnswer(RETURNS_DEEP_STUBS));
     class MyControl implements Serializable {
@@ -82,6 +103,27 @@ class FacadeTest implements Serializable {
         assertThat(new MyControl().findAll().getResultList()).isEqualTo(List.of(10L));
     }
 
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes", "MagicNumber"})
+    void findRangeWithCount() {
+        TypedQuery query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        var tuple = mock(Tuple.class);
+        when(tuple.get(0, Integer.class)).thenReturn(7);
+        when(tuple.get(1, Long.class)).thenReturn(12L);
+        when(query.getResultList()).thenReturn(List.of(tuple));
+        assertThat(new MyControl().findRangeWithCount(5, 7, null, null, null))
+                .isEqualTo(new RangeWithCount<>(List.of(7), 12));
+        verify(query).setFirstResult(5);
+        verify(query).setMaxResults(2);
+
+        when(query.getResultList()).thenReturn(List.of());
+        assertThat(new MyControl().findRangeWithCount(0, 2, null, null, null).count()).isZero();
+        verify(query, never()).getSingleResult();
+        when(query.getSingleResult()).thenReturn(12L);
+        assertThat(new MyControl().findRangeWithCount(20, 22, null, null, null).count()).isEqualTo(12);
+    }
+
     @Test
     void findEntityManager() {
         try (var mock = mockStatic(Beans.class)) {
@@ -113,6 +155,199 @@ class FacadeTest implements Serializable {
         assertThat(tnq2.getResultStream().findFirst().get()).isEqualTo(3L);
     }
 
+    @Test
+    @SuppressWarnings({"unchecked", "MagicNumber"})
+    void metrics() {
+        var measurements = new ArrayList<Measurement>();
+        var dao = DaoHelper.<Integer>builder().entityClass(Integer.class).entityManager(() -> em)
+                .metrics(measurements::add).build();
+        TypedQuery<Integer> query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        when(query.getMaxResults()).thenReturn(2);
+        when(query.setHint("hint", "value")).thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of(1, 2));
+        var range = dao.findRange(5, 7);
+        assertThat(range.setHint("hint", "value")).isSameAs(range);
+        assertThat(range.getResultList()).containsExactly(1, 2);
+        var nativeQuery = mock(Query.class);
+        when(em.createNativeQuery(any(String.class), eq(Long.class))).thenReturn(nativeQuery);
+        when(nativeQuery.getMaxResults()).thenReturn(Integer.MAX_VALUE);
+        when(nativeQuery.getSingleResult()).thenReturn(3L);
+        assertThat(dao.createNativeQuery("hello", Long.class).<Long>getSingleResult()).isEqualTo(3L);
+        assertThat(measurements).extracting(m -> m.operation().name(), Measurement::rows,
+                m -> m.operation().pageSize(), m -> m.operation().query())
+                .containsExactly(tuple("findRange", 2L, 2, query.toString()), tuple("nativeQuery", 3L, -1, "hello"));
+        assertThat(new MyControl().findRange(5, 7)).isSameAs(query);
+    }
+
+    @Test
+    @SuppressWarnings("MagicNumber")
+    void slowQueryLog() {
+        var messages = new ArrayList<String>();
+        var handler = new Handler() {
+            @Override
+            public void publish(LogRecord logRecord) {
+                messages.add(logRecord.getMessage());
+            }
+
+            @Override
+            public void flush() { }
+
+            @Override
+            public void close() { }
+        };
+        var logger = Logger.getLogger(SlowQueryLog.class.getName());
+        logger.addHandler(handler);
+        try {
+            var slowLog = SlowQueryLog.builder().threshold(Duration.ofMillis(100)).rateLimit(1).build();
+            var operation = new Operation("load", Integer.class, "numbers", 10, 5, "criteria", "select 1");
+            slowLog.record(new Measurement(operation, Duration.ofMillis(50), 5));
+            assertThat(messages).isEmpty();
+            slowLog.record(new Measurement(operation, Duration.ofMillis(150), 5));
+            slowLog.record(new Measurement(operation, Duration.ofMillis(150), 5));
+            assertThat(messages).containsExactly("Slow load of java.lang.Integer (numbers): 150 ms, "
+                    + "first: 10, page size: 5, rows: 5, criteria: criteria, query: select 1");
+            SlowQueryLog.builder().sampleRate(0).build()
+                    .record(new Measurement(operation, Duration.ofSeconds(5), 5));
+            assertThat(messages).hasSize(1);
+        } finally {
+            logger.removeHandler(handler);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("MagicNumber")
+    void bulkWrite() {
+        var dao = new MyControl().facade;
+        assertThat(dao.persistAll(Stream.of(1, 2, 3, 4, 5), 2)).isEqualTo(5);
+        verify(em, times(5)).persist(any());
+        verify(em, times(3)).flush();
+        verify(em, times(3)).clear();
+        verify(em, never()).setProperty(any(), any());
+        assertThat(dao.mergeAll(List.of(1, 2, 3, 4), 2)).isEqualTo(4);
+        verify(em, times(4)).merge(any());
+        verify(em, times(5)).flush();
+        assertThat(dao.mergeAll(List.of(), 2)).isZero();
+        verify(em, times(5)).flush();
+        assertThatIllegalArgumentException().isThrownBy(() -> dao.persistAll(List.of(1), 0));
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "MagicNumber"})
+    void streamAll() {
+        TypedQuery<Integer> query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        doReturn(query).when(query).unwrap(TypedQuery.class);
+        var closed = new AtomicBoolean();
+        when(query.getResultStream()).thenReturn(Stream.of(1, 2, 3, 4, 5).onClose(() -> closed.set(true)));
+        var dao = new MyControl().facade;
+        try (var rows = dao.streamAll(null, 2)) {
+            assertThat(rows).containsExactly(1, 2, 3, 4, 5);
+        }
+        assertThat(closed).isTrue();
+        verify(em, times(2)).clear();
+        verify(query).setHint("eclipselink.jdbc.fetch-size", 2);
+        assertThatIllegalArgumentException().isThrownBy(() -> dao.streamAll(null, 0));
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "MagicNumber"})
+    void bulkUpdateAndDelete() {
+        var dao = new MyControl().facade;
+        Query query = mock(Query.class);
+        when(em.createQuery(any(CriteriaUpdate.class))).thenReturn(query);
+        when(em.createQuery(any(CriteriaDelete.class))).thenReturn(query);
+        when(query.executeUpdate()).thenReturn(3, 2);
+        var updated = new ArrayList<Object>();
+        assertThat(dao.updateWhere(criteria -> updated.add(criteria.query()))).isEqualTo(3);
+        assertThat(updated).hasSize(1);
+        verify(em.getEntityManagerFactory().getCache(), never()).evict(Integer.class);
+        assertThat(dao.deleteWhere(criteria -> criteria.query().where(), true)).isEqualTo(2);
+        verify(em.getEntityManagerFactory().getCache()).evict(Integer.class);
+        assertThatExceptionOfType(NullPointerException.class).isThrownBy(() -> dao.deleteWhere(null));
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "MagicNumber"})
+    void findByIds() {
+        var dao = new MyControl().facade;
+        when(em.getMetamodel().entity(Integer.class).hasSingleIdAttribute()).thenReturn(true);
+        var idType = em.getMetamodel().entity(Integer.class).getIdType();
+        doReturn(int.class).when(idType).getJavaType();
+        when(em.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(any()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        TypedQuery<Integer> query = mock(TypedQuery.class);
+        when(em.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of(1, 3), List.of(2));
+        // IDs of other types are converted to the primary key's type
+        assertThat(dao.findByIds(List.of(3, 1L, "2", 3, 9), 2)).containsExactly(3, 1, 2);
+        verify(query, times(2)).getResultList();
+        assertThatIllegalArgumentException().isThrownBy(() -> dao.findByIds(List.of(1.5)));
+        assertThatIllegalArgumentException().isThrownBy(() -> dao.findByIds(List.of("abc")));
+        when(em.getMetamodel().entity(Integer.class).hasSingleIdAttribute()).thenReturn(false);
+        assertThatIllegalArgumentException().isThrownBy(() -> dao.findByIds(List.of(1)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void preparedQueries() {
+        var dao = new MyControl().facade;
+        TypedQuery<Integer> query = mock(TypedQuery.class);
+        when(em.createNamedQuery("flowlogix:DaoHelper:java.lang.Integer:byValue", Integer.class)).thenReturn(query);
+        PREPARED_CRITERIA_BUILT.set(0);
+        var prepared = dao.prepareFind("byValue", criteria -> PREPARED_CRITERIA_BUILT.incrementAndGet());
+        assertThat(prepared.get()).isSameAs(query);
+        assertThat(prepared.get()).isSameAs(query);
+        assertThat(PREPARED_CRITERIA_BUILT).hasValue(1);
+        verify(em.getEntityManagerFactory()).addNamedQuery(eq("flowlogix:DaoHelper:java.lang.Integer:byValue"), any());
+        TypedQuery<Long> countQuery = mock(TypedQuery.class);
+        when(em.createNamedQuery("flowlogix:DaoHelper:java.lang.Integer:countByValue", Long.class))
+                .thenReturn(countQuery);
+        assertThat(dao.prepareCount("countByValue", criteria -> { }).get()).isSameAs(countQuery);
+        verify(em.getEntityManagerFactory()).addNamedQuery(eq("flowlogix:DaoHelper:java.lang.Integer:countByValue"), any());
+        assertThatIllegalStateException().isThrownBy(() -> dao.prepareFind("byValue", criteria -> { }).get());
+    }
+
+    @Test
+    void preparedQueriesRejectCapturedValues() {
+        var dao = new MyControl().facade;
+        for (String value : List.of("first", "second")) {
+            assertThatIllegalArgumentException().isThrownBy(() -> dao.prepareFind("byCaptured",
+                    criteria -> criteria.query().where(criteria.builder().equal(criteria.root(), value))));
+            assertThatIllegalArgumentException().isThrownBy(() -> dao.prepareCount("countByCaptured",
+                    criteria -> criteria.query().where(criteria.builder().equal(criteria.root(), value))));
+        }
+        verify(em.getEntityManagerFactory(), never()).addNamedQuery(any(), any());
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "MagicNumber"})
+    void async() {
+        var executed = new AtomicInteger();
+        var dao = DaoHelper.<Integer>builder().entityClass(Integer.class).entityManager(() -> em)
+                .asyncExecutor(() -> task -> {
+                    executed.incrementAndGet();
+                    task.run();
+                }).build();
+        EntityManager taskEm = mock(EntityManager.class, RETURNS_DEEP_STUBS);
+        var emf = em.getEntityManagerFactory();
+        when(emf.createEntityManager()).thenReturn(taskEm);
+        TypedQuery<Integer> query = mock(TypedQuery.class);
+        when(taskEm.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of(1, 2));
+        doReturn(2L).when(query).getSingleResult();
+        assertThat(dao.countAsync(null).toCompletableFuture().join()).isEqualTo(2L);
+        assertThat(dao.findAllAsync(null).toCompletableFuture().join()).containsExactly(1, 2);
+        assertThat(dao.findRangeAsync(0, 2, null).toCompletableFuture().join()).containsExactly(1, 2);
+        verify(query).setMaxResults(2);
+        assertThat(executed).hasValue(3);
+        verify(em, never()).createQuery(any(CriteriaQuery.class));
+        verify(taskEm.getTransaction(), times(3)).begin();
+        verify(taskEm.getTransaction(), times(3)).rollback();
+        verify(taskEm, times(3)).close();
+        assertThatIllegalStateException().isThrownBy(() -> DaoHelper.defaultExecutor().get());
+    }
+
     @Test
     void nulls() {
         assertThatExceptionOfType(NullPointerException.class).isThrownBy(() -> {
@@ -43,7 +43,7 @@ public class Initializer {
     @SuppressWarnings("MagicNumber")
     void init(@Observes Startup init) {
         if (helper.count() == 0) {
-            Stream.of(
+            helper.mergeAll(Stream.of(
                     UserEntity.builder().userId("lprimak").fullName("Lenny Primak")
                             .address("Tree-Lined Blvd").zipCode(68502)
                             .userSettings(List.of(UserSettings.builder()
@@ -61,7 +61,7 @@ public class Initializer {
                             .address("NY, Somewhere").zipCode(10012).build(),
                     UserEntity.builder().userId("cousin").fullName("Cool Cousin")
                             .address("Beastly Court").zipCode(68502).build()
-            ).forEach(helper.getEntityManager().get()::merge);
+            ), 10);
         }
     }
 }
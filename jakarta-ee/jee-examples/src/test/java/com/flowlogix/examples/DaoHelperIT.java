@@ -42,6 +42,7 @@ class DaoHelperIT {
     void extractedCountAndList() {
         assertThat(userDao.count()).isEqualTo(5);
         assertThat(userDao.countAndList("Cool Cousin")).isEqualTo(userDao.extractedCountAndList("Cool Cousin"));
+        assertThat(userDao.countAndList("Cool Cousin")).isEqualTo(userDao.preparedCountAndList("Cool Cousin"));
     }
 
     @Test